@@ -0,0 +1,31 @@
+package org.challenge.locationmanagement;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.util.StringUtils;
+
+/**
+ * Entry point of the snapshot restore: starts the application without the web server and with
+ * the restore profile, lets {@link org.challenge.locationmanagement.readstore.LocationSnapshotRestorer}
+ * run, and exits with its exit code. Fails before connecting to anything when
+ * location.read-store.snapshot.restore does not name the file to restore.
+ */
+public class LocationSnapshotRestoreApplication {
+
+	private static final String RESTORE_PROPERTY = "location.read-store.snapshot.restore";
+
+	public static void main(String[] args) {
+		SpringApplication application = new SpringApplication(LocationManagementApiApplication.class);
+		application.setWebApplicationType(WebApplicationType.NONE);
+		application.setAdditionalProfiles("restore");
+		application.addListeners((ApplicationListener<ApplicationEnvironmentPreparedEvent>) event -> {
+			if (!StringUtils.hasText(event.getEnvironment().getProperty(RESTORE_PROPERTY))) {
+				throw new IllegalStateException("Set " + RESTORE_PROPERTY + " to the snapshot file to restore");
+			}
+		});
+		System.exit(SpringApplication.exit(application.run(args)));
+	}
+
+}
@@ -0,0 +1,130 @@
+package org.challenge.locationmanagement.concurrency;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit that adapts to observed latency, following the gradient approach.
+ *
+ * A long-term exponential average of request latency approximates the latency without queueing.
+ * Each sample compares it with the latest latency: while they are close the limit grows by
+ * roughly sqrt(limit), and once requests start queueing (latest latency rising above the
+ * average) the limit shrinks proportionally. Requests above the limit are rejected up front
+ * instead of waiting for a database connection.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_WINDOW = 600;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    // Guarded by this.
+    private double estimatedLimit;
+    private double longRttNanos;
+    private volatile int limit;
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimatedLimit = initialLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * @return a permit that must be released when the request completes, or null if the request must be rejected
+     */
+    public Permit tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                rejected.incrementAndGet();
+                return null;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return new Permit(System.nanoTime(), current + 1);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    synchronized void onSample(long rttNanos, int inFlightAtStart) {
+        if (rttNanos <= 0) {
+            return;
+        }
+        longRttNanos = longRttNanos == 0
+                ? rttNanos
+                : longRttNanos + (rttNanos - longRttNanos) / LONG_WINDOW;
+
+        // After an overload the average lags behind recovered latency; pull it down faster.
+        if (longRttNanos / rttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRttNanos / rttNanos));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+
+        // Do not grow the limit on samples from a mostly idle limiter: they say nothing about capacity.
+        if (inFlightAtStart < estimatedLimit / 2 && newLimit > estimatedLimit) {
+            return;
+        }
+
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    public final class Permit {
+        private final long startNanos;
+        private final int inFlightAtStart;
+
+        private Permit(long startNanos, int inFlightAtStart) {
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        public void release() {
+            inFlight.decrementAndGet();
+            onSample(System.nanoTime() - startNanos, inFlightAtStart);
+        }
+
+        /**
+         * Releases without feeding the latency into the limit, for requests that failed before doing real work.
+         */
+        public void releaseIgnoringLatency() {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveConcurrencyLimiter{" +
+                "name='" + name + '\'' +
+                ", limit=" + limit +
+                ", inFlight=" + inFlight.get() +
+                ", longRttMillis=" + TimeUnit.NANOSECONDS.toMillis((long) longRttNanos) +
+                '}';
+    }
+}
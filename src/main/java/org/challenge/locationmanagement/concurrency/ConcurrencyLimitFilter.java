@@ -0,0 +1,141 @@
+package org.challenge.locationmanagement.concurrency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.challenge.locationmanagement.dto.ErrorResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * Sheds load in front of the location endpoints once the database stops keeping up.
+ *
+ * Reads, single-location writes and bulk writes (bulk upserts and batches) get separate adaptive
+ * limits, so a burst of slow writes cannot starve reads and a few requests writing thousands of
+ * rows cannot drive the limit of single-location writes down with their latency.
+ * Rejected requests fail fast with 503 and a Retry-After header instead of queueing for a
+ * connection, which keeps latency of the accepted requests healthy.
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    private static final String LIMITED_PATH = "/api/locations";
+    private static final String STREAM_PATH = "/api/locations/stream";
+    private static final String BULK_PATH = "/api/locations/bulk";
+    private static final String BATCH_PATH = "/api/locations/batch";
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final AdaptiveConcurrencyLimiter readLimiter;
+    private final AdaptiveConcurrencyLimiter writeLimiter;
+    private final AdaptiveConcurrencyLimiter bulkLimiter;
+    private final ObjectMapper objectMapper;
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public ConcurrencyLimitFilter(@Value("${location.concurrency.read.initial-limit:50}") int readInitialLimit,
+                                  @Value("${location.concurrency.read.max-limit:500}") int readMaxLimit,
+                                  @Value("${location.concurrency.write.initial-limit:10}") int writeInitialLimit,
+                                  @Value("${location.concurrency.write.max-limit:100}") int writeMaxLimit,
+                                  @Value("${location.concurrency.bulk.initial-limit:2}") int bulkInitialLimit,
+                                  @Value("${location.concurrency.bulk.max-limit:10}") int bulkMaxLimit,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry) {
+        this.readLimiter = new AdaptiveConcurrencyLimiter("read", readInitialLimit, 4, readMaxLimit);
+        this.writeLimiter = new AdaptiveConcurrencyLimiter("write", writeInitialLimit, 2, writeMaxLimit);
+        this.bulkLimiter = new AdaptiveConcurrencyLimiter("bulk", bulkInitialLimit, 1, bulkMaxLimit);
+        this.objectMapper = objectMapper;
+        registerMetrics(readLimiter, meterRegistry);
+        registerMetrics(writeLimiter, meterRegistry);
+        registerMetrics(bulkLimiter, meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = urlPathHelper.getPathWithinApplication(request);
+        return !path.startsWith(LIMITED_PATH) || path.startsWith(STREAM_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        AdaptiveConcurrencyLimiter limiter = limiterFor(request);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+        if (permit == null) {
+            logger.warn("doFilterInternal: Rejecting {} {} over the {} concurrency limit of {}",
+                    request.getMethod(), request.getRequestURI(), limiter.getName(), limiter.getLimit());
+            reject(request, response);
+            return;
+        }
+
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, response);
+            completed = true;
+        } finally {
+            if (completed) {
+                permit.release();
+            } else {
+                permit.releaseIgnoringLatency();
+            }
+        }
+    }
+
+    private AdaptiveConcurrencyLimiter limiterFor(HttpServletRequest request) {
+        if (isRead(request)) {
+            return readLimiter;
+        }
+        String path = urlPathHelper.getPathWithinApplication(request);
+        return path.equals(BULK_PATH) || path.equals(BATCH_PATH) ? bulkLimiter : writeLimiter;
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ErrorResponse errorResponse = new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase(),
+                "The server is overloaded, please retry later.",
+                request.getRequestURI());
+
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), errorResponse);
+    }
+
+    private static void registerMetrics(AdaptiveConcurrencyLimiter limiter, MeterRegistry meterRegistry) {
+        Gauge.builder("location.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("kind", limiter.getName())
+                .register(meterRegistry);
+        Gauge.builder("location.concurrency.in-flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Requests currently holding a concurrency permit")
+                .tag("kind", limiter.getName())
+                .register(meterRegistry);
+        FunctionCounter.builder("location.concurrency.rejected", limiter, AdaptiveConcurrencyLimiter::getRejectedCount)
+                .description("Requests rejected because the concurrency limit was reached")
+                .tag("kind", limiter.getName())
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,68 @@
+package org.challenge.locationmanagement.concurrency;
+
+import org.challenge.locationmanagement.exception.ResourceUnavailableException;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the loader on its own
+ * thread and every caller that arrives while it is running shares its result or its exception.
+ *
+ * Keys live in a ConcurrentHashMap, so callers for different keys never contend on a common
+ * lock. A key is forgotten as soon as its load finishes; nothing is cached beyond that.
+ * Followers give up after a timeout rather than queueing behind a stuck load indefinitely.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long timeoutNanos;
+
+    public SingleFlight(Duration timeout) {
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> leader = inFlight.putIfAbsent(key, call);
+        if (leader != null) {
+            return await(key, leader);
+        }
+
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private V await(K key, CompletableFuture<V> leader) {
+        try {
+            return leader.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        } catch (TimeoutException e) {
+            throw new ResourceUnavailableException("Timed out waiting for a concurrent lookup of " + key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceUnavailableException("Interrupted while waiting for a concurrent lookup of " + key);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.challenge.locationmanagement.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Lets a run skip the Flyway migration through a plain property.
+ *
+ * 'spring.flyway.enabled' is evaluated at build time once the context is AOT-processed, so it
+ * cannot be used to start the fast-startup build without a database. The training run that
+ * records the class data sharing archive, and the startup-time check, rely on this instead.
+ */
+@Configuration
+public class SchemaMigrationConfig {
+
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(
+            @Value("${location.schema.migrate-on-startup:true}") boolean migrateOnStartup) {
+        return flyway -> {
+            if (migrateOnStartup) {
+                flyway.migrate();
+            }
+        };
+    }
+}
@@ -8,17 +8,35 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
+import org.challenge.locationmanagement.dto.BulkUpsertRequest;
+import org.challenge.locationmanagement.dto.BulkUpsertResultDto;
+import org.challenge.locationmanagement.dto.BulkUpsertShardResultDto;
+import org.challenge.locationmanagement.dto.DuplicateScanJobDto;
 import org.challenge.locationmanagement.dto.ErrorResponse;
+import org.challenge.locationmanagement.dto.LocationBatchRequest;
+import org.challenge.locationmanagement.dto.LocationBatchResultDto;
+import org.challenge.locationmanagement.dto.LocationChangesDto;
 import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.dto.LocationHistoryDto;
+import org.challenge.locationmanagement.dto.LocationOperationResultDto;
+import org.challenge.locationmanagement.event.LocationEventBroadcaster;
 import org.challenge.locationmanagement.exception.ResourceBadRequestException;
+import org.challenge.locationmanagement.idempotency.IdempotencyStore;
+import org.challenge.locationmanagement.service.LocationBatchService;
+import org.challenge.locationmanagement.service.LocationDeduplicationService;
 import org.challenge.locationmanagement.service.LocationService;
 import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.URI;
+import java.util.Map;
 
 
 @AllArgsConstructor
@@ -27,33 +45,50 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "Location API")
 public class LocationController {
 
+    private static final int MAX_CHANGES_LIMIT = 1000;
+    private static final int MAX_REPORTED_CLUSTERS = 10_000;
+
     private LocationService locationService;
+    private LocationEventBroadcaster locationEventBroadcaster;
+    private IdempotencyStore idempotencyStore;
+    private LocationBatchService locationBatchService;
+    private LocationDeduplicationService locationDeduplicationService;
 
 
     // Build Add Location REST API
-    @Operation(summary = "Create a new location", description = "Creates a new location")
+    @Operation(summary = "Create a new location", description = "Creates a new location. Requests retried with the same Idempotency-Key header return the originally created location instead of creating another one.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Returns a JSON with the data of the created location.",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = LocationDto.class))),
             @ApiResponse(responseCode = "400", description = "The request was invalid. The response body includes an error message detailing the issue.",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "409", description = "Another request with the same Idempotency-Key is still being processed.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
     })
     @PostMapping
     public ResponseEntity<LocationDto> createLocation(@RequestBody @Valid LocationDto locationDto,
-                                                      BindingResult bindingResult) {
+                                                      BindingResult bindingResult,
+                                                      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
 
         if (bindingResult.hasErrors()) {
             String errorMessage = bindingResult.getAllErrors().get(0).getDefaultMessage();
             throw new ResourceBadRequestException(errorMessage);
         }
 
-        LocationDto savedLocation = locationService.createLocation(locationDto);
-        return new ResponseEntity<>(savedLocation, HttpStatus.CREATED);
+        if (idempotencyKey == null) {
+            LocationDto savedLocation = locationService.createLocation(locationDto);
+            return withETag(ResponseEntity.status(HttpStatus.CREATED), savedLocation);
+        }
+
+        IdempotencyStore.Result result = idempotencyStore.execute(idempotencyKey, locationDto,
+                () -> locationService.createLocation(locationDto));
+        return withETag(ResponseEntity.status(HttpStatus.CREATED)
+                .header("Idempotent-Replayed", String.valueOf(result.replayed())), result.location());
     }
 
 
     // Build Get Location REST API
-    @Operation(summary = "Retrieve a location by ID", description = "Retrieves a location by its ID")
+    @Operation(summary = "Retrieve a location by ID", description = "Retrieves a location by its ID. The ETag header carries the location's version for use in If-Match.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Returns the details of the location with the specified ID.",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = LocationDto.class))),
@@ -63,13 +98,31 @@ public class LocationController {
     @GetMapping("{id}")
     public ResponseEntity<LocationDto> getLocationById(@PathVariable("id") Long locationId) {
         LocationDto locationDto = locationService.getLocationById(locationId);
-        return new ResponseEntity<>(locationDto, HttpStatus.OK);
+        return withETag(ResponseEntity.ok(), locationDto);
+    }
+
+    // Build Get Location Fields REST API
+    @Operation(summary = "Retrieve selected fields of a location by ID", description = "Retrieves only the comma-separated fields of a location, e.g. fields=name,city. The id is always included.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Returns the requested fields of the location with the specified ID."),
+            @ApiResponse(responseCode = "400", description = "The fields parameter names an unknown field. The response body includes an error message listing the allowed fields.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "404", description = "The location with the given ID was not found. The response body includes an error message indicating that the location was not found.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping(path = "{id}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getLocationFieldsById(@PathVariable("id") Long locationId,
+                                                                     @RequestParam("fields") String fields) {
+        Map<String, Object> location = locationService.getLocationById(locationId, fields);
+        return ResponseEntity.ok(location);
     }
 
     // Build Get All Locations REST API
     @Operation(summary = "Retrieve all locations", description = "Retrieves a paginated list of locations, ordered by creation date")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Returns a paginated list of locations ordered by creation date. The response body includes the details of the locations with pagination information."),
+            @ApiResponse(responseCode = "400", description = "Bad Request. With sharding enabled, the page reaches past the first 10000 locations. The response body includes an error message detailing the issue.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "500", description = "Indicates that an unexpected error occurred while processing the request. The response body includes an error message with details about the issue.",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
     })
@@ -79,43 +132,256 @@ public class LocationController {
         return ResponseEntity.ok(locations);
     }
 
+    // Build Get All Location Fields REST API
+    @Operation(summary = "Retrieve selected fields of all locations", description = "Retrieves a paginated list of locations with only the comma-separated fields, e.g. fields=name. "
+            + "The id is always included. Only the selected columns are read from the database.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Returns a paginated list of locations with the requested fields."),
+            @ApiResponse(responseCode = "400", description = "The fields or sort parameter names an unknown field, or, with sharding enabled, the page reaches past the first 10000 locations. "
+                    + "The response body includes an error message detailing the issue.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping(params = "fields")
+    public ResponseEntity<Page<Map<String, Object>>> getAllLocationFields(@ParameterObject Pageable pageable,
+                                                                          @RequestParam("fields") String fields) {
+        Page<Map<String, Object>> locations = locationService.getAllLocations(pageable, fields);
+        return ResponseEntity.ok(locations);
+    }
+
+    // Build Get Location History REST API
+    @Operation(summary = "Retrieve the change history of a location", description = "Retrieves a paginated list of the committed changes of a location, newest first. "
+            + "History is recorded asynchronously, so the most recent change can take a moment to appear. Deleted locations keep their history.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Returns a paginated list of changes, each with the state of the location after the change."),
+            @ApiResponse(responseCode = "500", description = "Indicates that an unexpected error occurred while processing the request. The response body includes an error message with details about the issue.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("{id}/history")
+    public ResponseEntity<Page<LocationHistoryDto>> getLocationHistory(@PathVariable("id") Long locationId,
+                                                                       @ParameterObject Pageable pageable) {
+        Page<LocationHistoryDto> history = locationService.getLocationHistory(locationId, pageable);
+        return ResponseEntity.ok(history);
+    }
+
+    // Build Location Changes REST API
+    @Operation(summary = "Retrieve location changes", description = "Retrieves the locations created, updated or deleted after the given cursor, ordered by change time")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Returns the changes after the cursor and the cursor to use on the next call.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = LocationChangesDto.class))),
+            @ApiResponse(responseCode = "400", description = "The cursor or limit is invalid. The response body includes an error message detailing the issue.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("changes")
+    public ResponseEntity<LocationChangesDto> getLocationChanges(@RequestParam(value = "since", required = false) String since,
+                                                                 @RequestParam(value = "limit", defaultValue = "100") int limit) {
+
+        if (limit < 1 || limit > MAX_CHANGES_LIMIT) {
+            throw new ResourceBadRequestException("The 'limit' parameter must be between 1 and " + MAX_CHANGES_LIMIT + ".");
+        }
+
+        LocationChangesDto changes = locationService.getLocationChanges(since, limit);
+        return ResponseEntity.ok(changes);
+    }
+
+    // Build Location Events Stream REST API
+    @Operation(summary = "Stream location changes", description = "Opens a Server-Sent Events stream of location CREATED, UPDATED and DELETED events. "
+            + "Reconnect with the Last-Event-ID header to resume; a 'reset' event means the client must resync through the changes endpoint. "
+            + "A request that changes more than 64 locations at once, such as a bulk upsert or a batch, is streamed as a single 'reset' event.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The event stream. Each event carries the change type, the location id and, except for deletions, the location.",
+                    content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE))
+    })
+    @GetMapping(path = "stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLocationChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return locationEventBroadcaster.subscribe(lastEventId);
+    }
+
     // Build Update Location REST API
-    @Operation(summary = "Update a location by ID", description = "Updates an existing location by its ID")
+    @Operation(summary = "Update a location by ID", description = "Updates an existing location by its ID. With an If-Match header, the update only happens if the location is still at that version.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully updated the location. Returns the updated location details.",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = LocationDto.class))),
-            @ApiResponse(responseCode = "400", description = "Bad Request. Indicates that the request body has invalid data. The response body includes an error message with details about the validation issues.",
+            @ApiResponse(responseCode = "400", description = "Bad Request. Indicates that the request body has invalid data, or, with sharding enabled, moves the location to a state placed on another shard. "
+                    + "The response body includes an error message with details about the issue.",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
             @ApiResponse(responseCode = "404", description = "Not Found. Indicates that the location with the specified ID does not exist. The response body includes an error message indicating that the location was not found.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "412", description = "Precondition Failed. The location was modified since the version given in If-Match.",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
     })
     @PutMapping("{id}")
     public ResponseEntity<LocationDto> updateLocation( @PathVariable("id") Long locationId,
                                                       @RequestBody @Valid LocationDto locationDto,
-                                                       BindingResult bindingResult) {
+                                                       BindingResult bindingResult,
+                                                      @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+
+        if (bindingResult.hasErrors()) {
+            String errorMessage = bindingResult.getAllErrors().get(0).getDefaultMessage();
+            throw new ResourceBadRequestException(errorMessage);
+        }
+
+        Long expectedVersion = parseIfMatch(ifMatch);
+        LocationDto updatedLocation = expectedVersion == null
+                ? locationService.updateLocation(locationId, locationDto)
+                : locationService.updateLocation(locationId, locationDto, expectedVersion);
+        return withETag(ResponseEntity.ok(), updatedLocation);
+    }
+
+    // Build Bulk Upsert Locations REST API
+    @Operation(summary = "Insert or update locations in bulk", description = "Inserts each location, or updates the existing location with the same externalRef, city and state. "
+            + "Existing locations whose values are unchanged are not written. With sharding enabled, each shard's locations are committed separately, "
+            + "so some shards can be written while others fail; the response then reports each shard, and the request can be retried as a whole.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Returns how many locations were inserted, updated and left unchanged.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkUpsertResultDto.class))),
+            @ApiResponse(responseCode = "4XX/5XX", description = "With sharding enabled, the locations of some shards were written and those of others were not. "
+                    + "Answers with the status of the first failed shard; the response body reports each shard.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkUpsertResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request. Indicates that the request body has invalid data or repeats a location. The response body includes an error message with details about the issue.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PutMapping("bulk")
+    public ResponseEntity<BulkUpsertResultDto> upsertLocations(@RequestBody @Valid BulkUpsertRequest bulkUpsertRequest,
+                                                               BindingResult bindingResult) {
 
         if (bindingResult.hasErrors()) {
             String errorMessage = bindingResult.getAllErrors().get(0).getDefaultMessage();
             throw new ResourceBadRequestException(errorMessage);
         }
 
-        LocationDto updatedLocation = locationService.updateLocation(locationId, locationDto);
-        return ResponseEntity.ok(updatedLocation);
+        BulkUpsertResultDto result = locationService.upsertLocations(bulkUpsertRequest.getLocations());
+        if (result.getShards() == null) {
+            return ResponseEntity.ok(result);
+        }
+        // A partially written sharded upsert answers with the status of the first shard that failed.
+        int status = result.getShards().stream()
+                .mapToInt(BulkUpsertShardResultDto::getStatus)
+                .filter(shardStatus -> shardStatus != HttpStatus.OK.value())
+                .findFirst()
+                .orElse(HttpStatus.OK.value());
+        return ResponseEntity.status(status).body(result);
+    }
+
+    // Build Batch Location Operations REST API
+    @Operation(summary = "Execute a batch of location operations", description = "Executes an ordered list of CREATE, UPDATE and DELETE operations in a single transaction. "
+            + "In ATOMIC mode all operations are applied or none; in CONTINUE_ON_ERROR mode the operations that fail are reported and the others are committed.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The batch was committed. Returns the result of each operation.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = LocationBatchResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request. The request body is invalid, or an ATOMIC batch was rolled back because an operation was invalid.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = LocationBatchResultDto.class))),
+            @ApiResponse(responseCode = "404", description = "Not Found. An ATOMIC batch was rolled back because an operation referred to a location that does not exist.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = LocationBatchResultDto.class))),
+            @ApiResponse(responseCode = "412", description = "Precondition Failed. An ATOMIC batch was rolled back because a location was no longer at the expected version.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = LocationBatchResultDto.class)))
+    })
+    @PostMapping("batch")
+    public ResponseEntity<LocationBatchResultDto> executeBatch(@RequestBody @Valid LocationBatchRequest batchRequest,
+                                                               BindingResult bindingResult) {
+
+        if (bindingResult.hasErrors()) {
+            String errorMessage = bindingResult.getAllErrors().get(0).getDefaultMessage();
+            throw new ResourceBadRequestException(errorMessage);
+        }
+
+        LocationBatchResultDto result = locationBatchService.executeBatch(batchRequest);
+        if (result.isCommitted()) {
+            return ResponseEntity.ok(result);
+        }
+        // A rolled back batch answers with the status of the operation that caused it.
+        int status = result.getResults().stream()
+                .mapToInt(LocationOperationResultDto::getStatus)
+                .filter(operationStatus -> operationStatus != HttpStatus.FAILED_DEPENDENCY.value())
+                .findFirst()
+                .orElse(HttpStatus.BAD_REQUEST.value());
+        return ResponseEntity.status(status).body(result);
+    }
+
+    // Build Find Duplicate Locations REST API
+    @Operation(summary = "Find duplicate locations", description = "Starts a background scan of every location for clusters whose name, neighborhood, city and state differ only in case, accents or whitespace. "
+            + "With merge=true, all locations of each cluster but the one with the lowest ID are deleted, unless they changed after the scan read them; "
+            + "the external reference of a deleted duplicate moves to the kept location. Poll the job at the URL in the Location header.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Accepted. Returns the running scan job.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = DuplicateScanJobDto.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request. The 'maxClusters' parameter is out of range.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "409", description = "Conflict. Another duplicate scan is still running.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @PostMapping("duplicates")
+    public ResponseEntity<DuplicateScanJobDto> findDuplicateLocations(@RequestParam(value = "merge", defaultValue = "false") boolean merge,
+                                                                      @RequestParam(value = "maxClusters", defaultValue = "100") int maxClusters) {
+
+        if (maxClusters < 0 || maxClusters > MAX_REPORTED_CLUSTERS) {
+            throw new ResourceBadRequestException("The 'maxClusters' parameter must be between 0 and " + MAX_REPORTED_CLUSTERS + ".");
+        }
+
+        DuplicateScanJobDto job = locationDeduplicationService.startScan(merge, maxClusters);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/locations/duplicates/" + job.getJobId()))
+                .body(job);
+    }
+
+    // Build Get Duplicate Scan REST API
+    @Operation(summary = "Get a duplicate scan", description = "Retrieves a duplicate scan job by its ID, with its report once it has succeeded.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the scan job.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = DuplicateScanJobDto.class))),
+            @ApiResponse(responseCode = "404", description = "Not Found. No recent scan has the specified ID.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
+    })
+    @GetMapping("duplicates/{jobId}")
+    public ResponseEntity<DuplicateScanJobDto> getDuplicateScan(@PathVariable("jobId") String jobId) {
+        return ResponseEntity.ok(locationDeduplicationService.getScanJob(jobId));
     }
 
     // Build Delete Location REST API
-    @Operation(summary = "Delete a location by ID", description = "Deletes a location by its ID")
+    @Operation(summary = "Delete a location by ID", description = "Deletes a location by its ID. With an If-Match header, the location is only deleted if it is still at that version.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully deleted the location. Returns a confirmation message.",
                     content = @Content(mediaType = "application/json", schema = @Schema(type = "string", example = "Location with ID 1 deleted successfully!"))),
             @ApiResponse(responseCode = "404", description = "Not Found. Indicates that the location with the specified ID does not exist. The response body includes an error message indicating that the location was not found.",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))),
+            @ApiResponse(responseCode = "412", description = "Precondition Failed. The location was modified since the version given in If-Match.",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class)))
     })
     @DeleteMapping("{id}")
-    public ResponseEntity<String> deleteLocation(@PathVariable("id") Long locationId) {
-        locationService.deleteLocation(locationId);
+    public ResponseEntity<String> deleteLocation(@PathVariable("id") Long locationId,
+                                                 @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        Long expectedVersion = parseIfMatch(ifMatch);
+        if (expectedVersion == null) {
+            locationService.deleteLocation(locationId);
+        } else {
+            locationService.deleteLocation(locationId, expectedVersion);
+        }
         return ResponseEntity.ok(String.format("Location with ID %d deleted successfully!", locationId));
     }
 
+    private static ResponseEntity<LocationDto> withETag(ResponseEntity.BodyBuilder response, LocationDto location) {
+        if (location != null && location.getVersion() != null) {
+            response.eTag(String.valueOf(location.getVersion()));
+        }
+        return response.body(location);
+    }
+
+    /**
+     * @return the version named by the If-Match header, or null when the header is absent or '*'
+     */
+    private static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException ignored) {
+                // Fall through to the error below.
+            }
+        }
+        throw new ResourceBadRequestException("The 'If-Match' header must be a single ETag returned for this location, e.g. \"3\".");
+    }
+
 
 }
@@ -0,0 +1,23 @@
+package org.challenge.locationmanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Snapshot of locations to insert or update by external reference, city and state.")
+public class BulkUpsertRequest {
+    @NotEmpty(message = "The 'locations' parameter cannot be empty!")
+    @Size(max = 10000, message = "At most 10000 locations can be upserted per request.")
+    private List<@Valid LocationUpsertDto> locations;
+}
@@ -0,0 +1,28 @@
+package org.challenge.locationmanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Outcome of a bulk upsert.")
+public class BulkUpsertResultDto {
+    private int inserted;
+    private int updated;
+    private int unchanged;
+
+    @Schema(description = "Outcome per shard when locations are sharded, absent otherwise. Each shard commits on its own, "
+            + "so some shards can be committed while others were rolled back.")
+    private List<BulkUpsertShardResultDto> shards;
+
+    public BulkUpsertResultDto(int inserted, int updated, int unchanged) {
+        this(inserted, updated, unchanged, null);
+    }
+}
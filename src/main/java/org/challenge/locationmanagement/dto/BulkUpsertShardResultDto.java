@@ -0,0 +1,26 @@
+package org.challenge.locationmanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Outcome of the part of a bulk upsert written to one shard.")
+public class BulkUpsertShardResultDto {
+    private int shard;
+
+    @Schema(description = "HTTP status of this shard's part; 200 when it was committed.")
+    private int status;
+
+    private int inserted;
+    private int updated;
+    private int unchanged;
+
+    @Schema(description = "Why this shard's part was rolled back. Absent when it was committed.")
+    private String error;
+}
@@ -0,0 +1,27 @@
+package org.challenge.locationmanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Locations whose name, neighborhood, city and state differ only in case, accents or whitespace.")
+public class DuplicateClusterDto {
+    @Schema(description = "The oldest location of the cluster, which a merge keeps.")
+    private Long keptId;
+
+    @Schema(description = "The other locations of the cluster, which a merge deletes.")
+    private List<Long> duplicateIds;
+
+    private String name;
+    private String neighborhood;
+    private String city;
+    private String state;
+}
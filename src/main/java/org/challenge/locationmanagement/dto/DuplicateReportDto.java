@@ -0,0 +1,33 @@
+package org.challenge.locationmanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Result of a duplicate location scan.")
+public class DuplicateReportDto {
+    @Schema(description = "Whether the duplicates were deleted.")
+    private boolean merge;
+
+    private long scanned;
+    private long clusterCount;
+    private long duplicateCount;
+
+    @Schema(description = "Duplicates deleted by the merge.")
+    private long deleted;
+
+    @Schema(description = "Duplicates left in place because they were changed or deleted after the scan read them, "
+            + "or because their external reference could not move to the kept location.")
+    private long skipped;
+
+    @Schema(description = "The clusters with the lowest kept ids, up to maxClusters.")
+    private List<DuplicateClusterDto> clusters;
+}
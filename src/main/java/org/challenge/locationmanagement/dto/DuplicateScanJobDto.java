@@ -0,0 +1,41 @@
+package org.challenge.locationmanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "A duplicate location scan running in the background.")
+public class DuplicateScanJobDto {
+
+    public enum Status {
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private String jobId;
+    private Status status;
+
+    @Schema(description = "Whether the duplicates are deleted.")
+    private boolean merge;
+
+    @Schema(description = "In UTC, without an offset.")
+    private LocalDateTime startedAt;
+
+    @Schema(description = "In UTC, without an offset. Absent while the scan is running.")
+    private LocalDateTime finishedAt;
+
+    @Schema(description = "Why the scan failed. Absent unless the status is FAILED.")
+    private String error;
+
+    @Schema(description = "Absent unless the status is SUCCEEDED.")
+    private DuplicateReportDto report;
+}
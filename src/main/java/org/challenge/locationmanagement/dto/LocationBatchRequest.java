@@ -0,0 +1,32 @@
+package org.challenge.locationmanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Ordered list of location operations executed in a single transaction.")
+public class LocationBatchRequest {
+
+    public enum Mode {
+        ATOMIC,
+        CONTINUE_ON_ERROR
+    }
+
+    @Schema(description = "ATOMIC applies all operations or none; CONTINUE_ON_ERROR commits the operations that succeed. Defaults to ATOMIC.")
+    private Mode mode = Mode.ATOMIC;
+
+    @NotEmpty(message = "The 'operations' parameter cannot be empty!")
+    @Size(max = 1000, message = "At most 1000 operations can be sent per batch.")
+    private List<@Valid LocationOperationDto> operations;
+}
@@ -0,0 +1,25 @@
+package org.challenge.locationmanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Per-operation results of a batch.")
+public class LocationBatchResultDto {
+    private LocationBatchRequest.Mode mode;
+
+    @Schema(description = "Whether the transaction was committed. An ATOMIC batch with a failed operation is rolled back.")
+    private boolean committed;
+
+    private int succeeded;
+    private int failed;
+    private List<LocationOperationResultDto> results;
+}
@@ -0,0 +1,30 @@
+package org.challenge.locationmanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "A single entry of the location change feed.")
+public class LocationChangeDto {
+
+    public enum ChangeType {
+        UPSERT,
+        DELETE
+    }
+
+    private ChangeType type;
+    private Long id;
+
+    @Schema(description = "Current state of the location. Absent for DELETE entries.")
+    private LocationDto location;
+
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,24 @@
+package org.challenge.locationmanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "A page of the location change feed.")
+public class LocationChangesDto {
+    private List<LocationChangeDto> changes;
+
+    @Schema(description = "Opaque cursor to pass as 'since' on the next call.")
+    private String nextCursor;
+
+    @Schema(description = "True when more changes are immediately available after nextCursor.")
+    private boolean hasMore;
+}
@@ -1,5 +1,6 @@
 package org.challenge.locationmanagement.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
@@ -30,11 +31,28 @@ public class LocationDto {
     @NotBlank(message = "The 'state' parameter cannot be left blank!")
     private String state;
 
-    @Schema(accessMode = Schema.AccessMode.READ_ONLY)
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, description = "In UTC, without an offset.")
     private LocalDateTime createdAt;
-    @Schema(accessMode = Schema.AccessMode.READ_ONLY)
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, description = "In UTC, without an offset.")
     private LocalDateTime updatedAt;
 
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, description = "Optimistic locking version, also sent as the ETag header.")
+    private Long version;
+
+    // Carried for the read store snapshot; not part of the API.
+    @JsonIgnore
+    private String externalRef;
+
+    public LocationDto(Long id, String name, String neighborhood, String city, String state,
+                       LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this(id, name, neighborhood, city, state, createdAt, updatedAt, null);
+    }
+
+    public LocationDto(Long id, String name, String neighborhood, String city, String state,
+                       LocalDateTime createdAt, LocalDateTime updatedAt, Long version) {
+        this(id, name, neighborhood, city, state, createdAt, updatedAt, version, null);
+    }
+
     @Override
     public String toString() {
         return "LocationDto{" +
@@ -45,6 +63,7 @@ public class LocationDto {
                 ", state='" + state + '\'' +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
+                ", version=" + version +
                 '}';
     }
 
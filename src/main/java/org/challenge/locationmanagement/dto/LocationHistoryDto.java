@@ -0,0 +1,28 @@
+package org.challenge.locationmanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "A committed change of a location and the location's state after it.")
+public class LocationHistoryDto {
+    private Long locationId;
+
+    @Schema(description = "CREATED, UPDATED or DELETED")
+    private String changeType;
+
+    private String name;
+    private String neighborhood;
+    private String city;
+    private String state;
+    private Long version;
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,36 @@
+package org.challenge.locationmanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "A single create, update or delete of a batch.")
+public class LocationOperationDto {
+
+    public enum Type {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    @NotNull(message = "The 'type' parameter cannot be null!")
+    private Type type;
+
+    @Schema(description = "Id of the location to update or delete. Not used by CREATE.")
+    private Long id;
+
+    @Schema(description = "Optional expected version for UPDATE and DELETE, as with the If-Match header.")
+    private Long version;
+
+    @Valid
+    @Schema(description = "The new values for CREATE and UPDATE. Not used by DELETE.")
+    private LocationDto location;
+}
@@ -0,0 +1,30 @@
+package org.challenge.locationmanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Outcome of one operation of a batch.")
+public class LocationOperationResultDto {
+
+    @Schema(description = "Position of the operation in the request.")
+    private int index;
+
+    private LocationOperationDto.Type type;
+
+    @Schema(description = "HTTP status the operation would have had as a single request; 424 when it was rolled back because another operation failed.")
+    private int status;
+
+    private Long id;
+
+    @Schema(description = "The location after a successful CREATE or UPDATE.")
+    private LocationDto location;
+
+    private String error;
+}
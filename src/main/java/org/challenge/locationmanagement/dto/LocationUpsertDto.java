@@ -0,0 +1,30 @@
+package org.challenge.locationmanagement.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "A location identified by its external reference, city and state, as sent by partner feeds.")
+public class LocationUpsertDto {
+    @NotBlank(message = "The 'externalRef' parameter cannot be left blank!")
+    private String externalRef;
+
+    @NotBlank(message = "The 'name' parameter cannot be left blank!")
+    private String name;
+
+    @NotBlank(message = "The 'neighborhood' parameter cannot be left blank!")
+    private String neighborhood;
+
+    @NotBlank(message = "The 'city' parameter cannot be left blank!")
+    private String city;
+
+    @NotBlank(message = "The 'state' parameter cannot be left blank!")
+    private String state;
+}
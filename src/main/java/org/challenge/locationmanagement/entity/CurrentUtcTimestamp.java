@@ -0,0 +1,31 @@
+package org.challenge.locationmanagement.entity;
+
+import org.hibernate.annotations.ValueGenerationType;
+import org.hibernate.generator.EventType;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Stamps the column with {@link #SQL} inside the INSERT or UPDATE statement itself, so writes do
+ * not need a separate query for the time, and reads the stamped value back with the row.
+ */
+@ValueGenerationType(generatedBy = CurrentUtcTimestampGeneration.class)
+@Retention(RUNTIME)
+@Target(FIELD)
+public @interface CurrentUtcTimestamp {
+
+    /**
+     * Start time of the current transaction by the database clock, in UTC, as a PostgreSQL
+     * timestamp without time zone.
+     */
+    String SQL = "(CURRENT_TIMESTAMP AT TIME ZONE 'UTC')";
+
+    /**
+     * The statements that stamp the column.
+     */
+    EventType[] event() default {EventType.INSERT, EventType.UPDATE};
+}
@@ -0,0 +1,40 @@
+package org.challenge.locationmanagement.entity;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.generator.OnExecutionGenerator;
+
+import java.util.EnumSet;
+
+/**
+ * Generator behind {@link CurrentUtcTimestamp}.
+ */
+public class CurrentUtcTimestampGeneration implements OnExecutionGenerator {
+
+    private final EnumSet<EventType> eventTypes;
+
+    public CurrentUtcTimestampGeneration(CurrentUtcTimestamp annotation) {
+        this.eventTypes = EventTypeSets.fromArray(annotation.event());
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return eventTypes;
+    }
+
+    @Override
+    public boolean referenceColumnsInSql(Dialect dialect) {
+        return true;
+    }
+
+    @Override
+    public boolean writePropertyValue() {
+        return false;
+    }
+
+    @Override
+    public String[] getReferencedColumnValues(Dialect dialect) {
+        return new String[]{CurrentUtcTimestamp.SQL};
+    }
+}
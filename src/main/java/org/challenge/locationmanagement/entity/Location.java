@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.generator.EventType;
 
 import java.time.LocalDateTime;
 
@@ -12,7 +13,11 @@ import java.time.LocalDateTime;
 @Setter
 @NoArgsConstructor
 @Entity
-@Table(name = "locations")
+@Table(name = "locations", indexes = {
+        @Index(name = "idx_locations_updated_at_id", columnList = "updated_at, id")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_locations_external_ref_city_state", columnNames = {"external_ref", "city", "state"})
+})
 public class Location {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -23,12 +28,22 @@ public class Location {
     private String city;
     private String state;
 
+    // Key assigned by partner feeds; together with city and state it identifies a location for bulk upserts.
+    @Column(name = "external_ref")
+    private String externalRef;
+
+    @CurrentUtcTimestamp(event = EventType.INSERT)
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
+    @CurrentUtcTimestamp
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(name = "version", columnDefinition = "bigint default 0 not null")
+    private Long version;
+
     public Location(String name, String neighborhood, String city, String state) {
         this.name = name;
         this.neighborhood = neighborhood;
@@ -36,17 +51,6 @@ public class Location {
         this.state = state;
     }
 
-    @PrePersist
-    protected void onCreate() {
-        createdAt = LocalDateTime.now();
-        updatedAt = LocalDateTime.now();
-    }
-
-    @PreUpdate
-    protected void onUpdate() {
-        updatedAt = LocalDateTime.now();
-    }
-
     @Override
     public String toString() {
         return "Location{" +
@@ -55,8 +59,10 @@ public class Location {
                 ", neighborhood='" + neighborhood + '\'' +
                 ", city='" + city + '\'' +
                 ", state='" + state + '\'' +
+                ", externalRef='" + externalRef + '\'' +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
+                ", version=" + version +
                 '}';
     }
 
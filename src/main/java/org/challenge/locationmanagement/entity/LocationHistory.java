@@ -0,0 +1,56 @@
+package org.challenge.locationmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * One committed change of a location. Rows are only ever inserted, by the asynchronous history writer.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "location_history", indexes = {
+        @Index(name = "idx_location_history_location_changed_at", columnList = "location_id, changed_at")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_location_history_event_id", columnNames = "event_id")
+})
+public class LocationHistory {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "event_id", nullable = false, length = 36, updatable = false)
+    private String eventId;
+
+    @Column(name = "location_id", nullable = false, updatable = false)
+    private Long locationId;
+
+    @Column(name = "change_type", nullable = false, length = 16, updatable = false)
+    private String changeType;
+
+    private String name;
+    private String neighborhood;
+    private String city;
+    private String state;
+    private Long version;
+
+    @Column(name = "changed_at", nullable = false, updatable = false)
+    private LocalDateTime changedAt;
+
+    @Override
+    public String toString() {
+        return "LocationHistory{" +
+                "id=" + id +
+                ", eventId='" + eventId + '\'' +
+                ", locationId=" + locationId +
+                ", changeType='" + changeType + '\'' +
+                ", version=" + version +
+                ", changedAt=" + changedAt +
+                '}';
+    }
+}
@@ -0,0 +1,44 @@
+package org.challenge.locationmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Marker left behind when a location is deleted, so that delta sync clients
+ * can learn about deletions. Location ids are never reused, which makes the
+ * deleted location's id a natural primary key.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "location_tombstones", indexes = {
+        @Index(name = "idx_location_tombstones_deleted_at_id", columnList = "deleted_at, location_id")
+})
+public class LocationTombstone {
+    @Id
+    @Column(name = "location_id")
+    private Long locationId;
+
+    @CurrentUtcTimestamp
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+
+    public LocationTombstone(Long locationId) {
+        this.locationId = locationId;
+    }
+
+    @Override
+    public String toString() {
+        return "LocationTombstone{" +
+                "locationId=" + locationId +
+                ", deletedAt=" + deletedAt +
+                '}';
+    }
+}
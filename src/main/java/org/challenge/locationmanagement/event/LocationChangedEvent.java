@@ -0,0 +1,30 @@
+package org.challenge.locationmanagement.event;
+
+import org.challenge.locationmanagement.dto.LocationDto;
+
+/**
+ * Application event published by the write path whenever a location is created, updated or deleted.
+ * Listeners that need to observe only durable changes should bind to the AFTER_COMMIT phase.
+ *
+ * @param location the state after the change; null for deletions
+ */
+public record LocationChangedEvent(Type type, Long locationId, LocationDto location) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public static LocationChangedEvent created(LocationDto location) {
+        return new LocationChangedEvent(Type.CREATED, location.getId(), location);
+    }
+
+    public static LocationChangedEvent updated(LocationDto location) {
+        return new LocationChangedEvent(Type.UPDATED, location.getId(), location);
+    }
+
+    public static LocationChangedEvent deleted(Long locationId) {
+        return new LocationChangedEvent(Type.DELETED, locationId, null);
+    }
+}
@@ -0,0 +1,335 @@
+package org.challenge.locationmanagement.event;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Pushes committed location changes to Server-Sent Events subscribers.
+ *
+ * Subscribers hold no thread while idle: each one owns a bounded queue, drained by a fixed pool
+ * of sender threads only while it has something to send, a few events per turn so that busy
+ * subscribers take turns. Publishing only ever queues; the emitter is written and completed by
+ * the subscriber's drain task alone, because the emitter's methods wait for any write in progress.
+ * A subscriber whose queue overflows, or that is stuck in one write for longer than
+ * SEND_TIMEOUT, is disconnected instead of buffering without bound; it can reconnect with
+ * Last-Event-ID and resume from the replay buffer, or receive a "reset" event when it fell too
+ * far behind and must resync through the change feed. A stuck write keeps its sender thread until
+ * the connector's write timeout fails it, so the pool should be larger than the number of clients
+ * expected to stall at once; when it is not, the other subscribers fall behind and are
+ * disconnected in turn.
+ *
+ * The changes of a transaction are streamed once it commits. A transaction that wrote more than
+ * MAX_EVENTS_PER_TRANSACTION locations, such as a bulk upsert or a batch, is streamed as a single
+ * "reset" event instead, which would otherwise overflow the queue of every subscriber and push
+ * the changes of all other writes out of the replay buffer.
+ */
+@Component
+public class LocationEventBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationEventBroadcaster.class);
+
+    private static final int REPLAY_CAPACITY = 1024;
+    private static final int SUBSCRIBER_QUEUE_CAPACITY = 256;
+    private static final long SEND_TIMEOUT_NANOS = Duration.ofSeconds(10).toNanos();
+    private static final long EMITTER_TIMEOUT_MILLIS = Duration.ofMinutes(30).toMillis();
+    private static final long HEARTBEAT_SECONDS = 20;
+    private static final int EVENTS_PER_DRAIN = 32;
+    private static final int MAX_EVENTS_PER_TRANSACTION = SUBSCRIBER_QUEUE_CAPACITY / 4;
+
+    // Event ids are "<bootId>-<sequence>" so ids handed out by a previous process are recognised as stale.
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Object publishLock = new Object();
+    private final StreamedEvent[] replay = new StreamedEvent[REPLAY_CAPACITY];
+    private long sequence;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService sender;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(daemon("location-sse-heartbeat"));
+    private final Supplier<SseEmitter> emitters;
+
+    @Autowired
+    public LocationEventBroadcaster(@Value("${location.events.sender-threads:8}") int senderThreads) {
+        this(senderThreads, () -> new SseEmitter(EMITTER_TIMEOUT_MILLIS));
+    }
+
+    LocationEventBroadcaster(int senderThreads, Supplier<SseEmitter> emitters) {
+        this.sender = Executors.newFixedThreadPool(senderThreads, daemon("location-sse-sender"));
+        this.emitters = emitters;
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeats, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @EventListener
+    public void onLocationChanged(LocationChangedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(event.type().name(), event);
+            return;
+        }
+        TransactionEvents transactionEvents = (TransactionEvents) TransactionSynchronizationManager.getResource(this);
+        if (transactionEvents == null) {
+            transactionEvents = new TransactionEvents();
+            TransactionSynchronizationManager.bindResource(this, transactionEvents);
+            TransactionSynchronizationManager.registerSynchronization(transactionEvents);
+        }
+        transactionEvents.add(event);
+    }
+
+    private void publish(String name, LocationChangedEvent event) {
+        synchronized (publishLock) {
+            StreamedEvent streamed = new StreamedEvent(++sequence, name, event);
+            replay[(int) (sequence % REPLAY_CAPACITY)] = streamed;
+            // Enqueue under the lock so every subscriber sees events in sequence order.
+            for (Subscriber subscriber : subscribers) {
+                subscriber.enqueue(streamed);
+            }
+        }
+    }
+
+    public SseEmitter subscribe(String lastEventId) {
+        Subscriber subscriber = new Subscriber(emitters.get());
+        subscriber.emitter.onCompletion(subscriber::close);
+        subscriber.emitter.onTimeout(subscriber::close);
+        subscriber.emitter.onError(error -> subscriber.close());
+
+        synchronized (publishLock) {
+            for (StreamedEvent missed : missedEvents(lastEventId)) {
+                subscriber.enqueue(missed);
+            }
+            subscribers.add(subscriber);
+        }
+
+        logger.info("subscribe: SSE subscriber added, {} active", subscribers.size());
+        return subscriber.emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    // Caller must hold publishLock.
+    private List<StreamedEvent> missedEvents(String lastEventId) {
+        List<StreamedEvent> missed = new ArrayList<>();
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return missed;
+        }
+
+        long lastSequence = parseSequence(lastEventId);
+        long oldestAvailable = Math.max(1, sequence - REPLAY_CAPACITY + 1);
+        if (lastSequence < 0 || lastSequence > sequence || lastSequence + 1 < oldestAvailable) {
+            missed.add(new StreamedEvent(sequence, "reset", null));
+            return missed;
+        }
+        for (long s = lastSequence + 1; s <= sequence; s++) {
+            missed.add(replay[(int) (s % REPLAY_CAPACITY)]);
+        }
+        return missed;
+    }
+
+    private long parseSequence(String eventId) {
+        int separator = eventId.lastIndexOf('-');
+        if (separator < 0 || !eventId.substring(0, separator).equals(bootId)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void sendHeartbeats() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long sendStartedAt = subscriber.sendStartedAt;
+            if (sendStartedAt != 0 && now - sendStartedAt > SEND_TIMEOUT_NANOS) {
+                // Its thread stays blocked until the connector's write timeout fails the write.
+                logger.warn("sendHeartbeats: Disconnecting SSE subscriber stuck on one write for over {} s",
+                        TimeUnit.NANOSECONDS.toSeconds(SEND_TIMEOUT_NANOS));
+                subscriber.disconnect();
+            } else {
+                subscriber.enqueue(StreamedEvent.HEARTBEAT);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        sender.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            // Completing a subscriber that is mid-write would wait for the write.
+            if (subscriber.sendStartedAt == 0) {
+                subscriber.emitter.complete();
+            }
+        }
+        subscribers.clear();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class TransactionEvents implements TransactionSynchronization {
+        // Dropped once the transaction has written more than MAX_EVENTS_PER_TRANSACTION locations.
+        private List<LocationChangedEvent> events = new ArrayList<>();
+        private int count;
+
+        void add(LocationChangedEvent event) {
+            if (++count > MAX_EVENTS_PER_TRANSACTION) {
+                events = null;
+            } else {
+                events.add(event);
+            }
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(LocationEventBroadcaster.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(LocationEventBroadcaster.this, this);
+        }
+
+        @Override
+        public void afterCommit() {
+            synchronized (publishLock) {
+                if (events == null) {
+                    logger.info("afterCommit: Streaming a reset event for a transaction that changed {} locations", count);
+                    publish("reset", null);
+                    return;
+                }
+                for (LocationChangedEvent event : events) {
+                    publish(event.type().name(), event);
+                }
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(LocationEventBroadcaster.this);
+        }
+    }
+
+    private record StreamedEvent(long sequence, String name, LocationChangedEvent payload) {
+        static final StreamedEvent HEARTBEAT = new StreamedEvent(-1, null, null);
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<StreamedEvent> queue = new ArrayBlockingQueue<>(SUBSCRIBER_QUEUE_CAPACITY);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+        // Set when the broadcaster drops the subscriber, so the drain task completes the emitter.
+        private volatile boolean disconnecting;
+        // System.nanoTime() when the write in progress started, 0 while not writing.
+        private volatile long sendStartedAt;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void enqueue(StreamedEvent event) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                logger.warn("enqueue: Disconnecting slow SSE subscriber after {} queued events", SUBSCRIBER_QUEUE_CAPACITY);
+                disconnect();
+                return;
+            }
+            scheduleDrain();
+        }
+
+        /**
+         * Stops queueing events for the subscriber and has its drain task complete the emitter,
+         * once any write in progress has returned.
+         */
+        void disconnect() {
+            // Set before closing: a drain task that sees the subscriber closed must also see this.
+            disconnecting = true;
+            close();
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int sent = 0;
+            while (!closed) {
+                if (sent == EVENTS_PER_DRAIN) {
+                    // Give the thread to the next subscriber; this one keeps its draining flag and queues up again.
+                    sender.execute(this::drain);
+                    return;
+                }
+                StreamedEvent event = queue.poll();
+                if (event == null) {
+                    draining.set(false);
+                    // An event may have been queued, or the subscriber dropped, after poll() but before the flag was cleared.
+                    if ((queue.isEmpty() && !closed) || !draining.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                sendStartedAt = System.nanoTime() | 1;
+                try {
+                    emitter.send(toSse(event));
+                    sent++;
+                } catch (IOException | IllegalStateException e) {
+                    close();
+                    return;
+                } finally {
+                    sendStartedAt = 0;
+                }
+            }
+            if (disconnecting) {
+                emitter.complete();
+            }
+        }
+
+        private SseEmitter.SseEventBuilder toSse(StreamedEvent event) {
+            if (event == StreamedEvent.HEARTBEAT) {
+                return SseEmitter.event().comment("keep-alive");
+            }
+            SseEmitter.SseEventBuilder builder = SseEmitter.event()
+                    .id(bootId + "-" + event.sequence())
+                    .name(event.name());
+            return event.payload() == null
+                    ? builder.data("resync required")
+                    : builder.data(event.payload(), MediaType.APPLICATION_JSON);
+        }
+
+        void close() {
+            closed = true;
+            queue.clear();
+            subscribers.remove(this);
+        }
+    }
+}
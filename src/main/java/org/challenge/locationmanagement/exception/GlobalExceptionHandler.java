@@ -0,0 +1,55 @@
+package org.challenge.locationmanagement.exception;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.challenge.locationmanagement.dto.ErrorResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.time.LocalDateTime;
+
+/**
+ * Renders the application's exceptions as {@link ErrorResponse} directly from the handler,
+ * instead of going through the container's error page forward and Spring Boot's error controller.
+ */
+@ControllerAdvice
+@ResponseBody
+public class GlobalExceptionHandler {
+
+    @ExceptionHandler(ResourceNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleNotFound(ResourceNotFoundException exception, HttpServletRequest request) {
+        return build(HttpStatus.NOT_FOUND, exception, request);
+    }
+
+    @ExceptionHandler(ResourceBadRequestException.class)
+    public ResponseEntity<ErrorResponse> handleBadRequest(ResourceBadRequestException exception, HttpServletRequest request) {
+        return build(HttpStatus.BAD_REQUEST, exception, request);
+    }
+
+    @ExceptionHandler(ResourceConflictException.class)
+    public ResponseEntity<ErrorResponse> handleConflict(ResourceConflictException exception, HttpServletRequest request) {
+        return build(HttpStatus.CONFLICT, exception, request);
+    }
+
+    @ExceptionHandler(ResourcePreconditionFailedException.class)
+    public ResponseEntity<ErrorResponse> handlePreconditionFailed(ResourcePreconditionFailedException exception, HttpServletRequest request) {
+        return build(HttpStatus.PRECONDITION_FAILED, exception, request);
+    }
+
+    @ExceptionHandler(ResourceUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleUnavailable(ResourceUnavailableException exception, HttpServletRequest request) {
+        return build(HttpStatus.SERVICE_UNAVAILABLE, exception, request);
+    }
+
+    private static ResponseEntity<ErrorResponse> build(HttpStatus status, RuntimeException exception, HttpServletRequest request) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                LocalDateTime.now(),
+                status.value(),
+                status.getReasonPhrase(),
+                exception.getMessage(),
+                request.getRequestURI());
+        return ResponseEntity.status(status).body(errorResponse);
+    }
+}
@@ -3,9 +3,13 @@ package org.challenge.locationmanagement.exception;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+/**
+ * Thrown for lookups of locations that do not exist. Not-found is an expected outcome that can
+ * be very frequent, so the exception is stackless: it is cheap to create and carries no trace.
+ */
 @ResponseStatus(value = HttpStatus.NOT_FOUND)
 public class ResourceNotFoundException extends RuntimeException {
     public ResourceNotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
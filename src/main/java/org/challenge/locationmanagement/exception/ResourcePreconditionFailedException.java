@@ -0,0 +1,11 @@
+package org.challenge.locationmanagement.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.PRECONDITION_FAILED)
+public class ResourcePreconditionFailedException extends RuntimeException {
+    public ResourcePreconditionFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,296 @@
+package org.challenge.locationmanagement.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Local append-only file of newline-terminated records, consumed by a single reader.
+ *
+ * The reader acknowledges the offset up to which records are durably stored elsewhere; the
+ * offset is kept in a checkpoint file so unacknowledged records are read again after a
+ * restart, and the log is truncated whenever the reader has caught up. Appends block for a
+ * bounded time while the unacknowledged backlog is over its limit.
+ *
+ * Appends are not durable until forced. Writers that append concurrently share one force: a
+ * writer whose records were covered by a force that ran while it waited returns without another.
+ */
+public class HistoryWriteAheadLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoryWriteAheadLog.class);
+
+    static final String LOG_FILE = "history.wal";
+    static final String CHECKPOINT_FILE = "history.checkpoint";
+
+    private static final int READ_CHUNK_BYTES = 256 * 1024;
+    private static final byte NEWLINE = '\n';
+
+    private final Path checkpointFile;
+    private final Path checkpointTempFile;
+    private final FileChannel channel;
+    private final long maxBacklogBytes;
+    private final long maxBackpressureNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock forceLock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+
+    // End of the last complete record, and end of the last acknowledged record.
+    private volatile long size;
+    private volatile long acknowledged;
+    // Bytes appended and bytes forced since the log was opened; unlike offsets, not reset when the log is truncated.
+    private volatile long appendedBytes;
+    private volatile long forcedBytes;
+
+    public HistoryWriteAheadLog(Path directory, long maxBacklogBytes, Duration maxBackpressureWait) throws IOException {
+        Files.createDirectories(directory);
+        this.checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        this.checkpointTempFile = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        this.maxBacklogBytes = maxBacklogBytes;
+        this.maxBackpressureNanos = maxBackpressureWait.toNanos();
+        this.channel = FileChannel.open(directory.resolve(LOG_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long length = channel.size();
+        long end = endOfLastRecord(length);
+        if (end < length) {
+            // A record torn by a crash mid-append was never acknowledged to anyone: drop it.
+            logger.warn("open: Discarding {} bytes of an incomplete record at the end of the history log", length - end);
+            channel.truncate(end);
+        }
+        this.size = end;
+
+        long checkpoint = readCheckpoint();
+        // A checkpoint beyond the end means the log was truncated after being fully acknowledged.
+        this.acknowledged = checkpoint <= end ? checkpoint : 0;
+        if (acknowledged < size) {
+            logger.info("open: {} bytes of history records pending from a previous run", size - acknowledged);
+        }
+    }
+
+    /**
+     * Appends one record, which must not contain a newline.
+     *
+     * @return the position to {@link #force(long)} to make the record durable
+     */
+    public long append(String record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+        lock.lock();
+        try {
+            awaitBacklogBelowLimit();
+            long position = size;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            appendedBytes += position - size;
+            size = position;
+            appended.signalAll();
+            return appendedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitBacklogBelowLimit() {
+        long remaining = maxBackpressureNanos;
+        while (size - acknowledged > maxBacklogBytes) {
+            if (remaining <= 0) {
+                // Past the wait bound the disk absorbs the burst rather than the caller.
+                logger.warn("append: History backlog of {} bytes is over the {} byte limit", size - acknowledged, maxBacklogBytes);
+                return;
+            }
+            try {
+                remaining = drained.awaitNanos(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads up to maxRecords unacknowledged records, oldest first, without consuming them.
+     */
+    public List<Entry> read(int maxRecords) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long position = acknowledged;
+        long end = size;
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_CHUNK_BYTES, Math.max(end - position, 1)));
+
+        while (entries.size() < maxRecords && position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            readFully(buffer, position);
+
+            byte[] bytes = buffer.array();
+            int lineStart = 0;
+            for (int i = 0; i < buffer.limit() && entries.size() < maxRecords; i++) {
+                if (bytes[i] == NEWLINE) {
+                    String record = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                    entries.add(new Entry(record, position + i + 1));
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart == 0) {
+                // A single record larger than the buffer: read it with a buffer that fits.
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                continue;
+            }
+            position += lineStart;
+        }
+        return entries;
+    }
+
+    /**
+     * Blocks until there are unacknowledged records or the timeout elapses.
+     *
+     * @return true if records are available
+     */
+    public boolean awaitRecords(long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = unit.toNanos(timeout);
+            while (acknowledged == size && remaining > 0) {
+                remaining = appended.awaitNanos(remaining);
+            }
+            return acknowledged < size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks every record ending at or before offset as stored; they will not be read again.
+     */
+    public void acknowledge(long offset) throws IOException {
+        lock.lock();
+        try {
+            if (offset == size) {
+                // Fully drained: start over so the file does not grow without bound.
+                writeCheckpoint(0);
+                channel.truncate(0);
+                size = 0;
+                acknowledged = 0;
+            } else {
+                writeCheckpoint(offset);
+                acknowledged = offset;
+            }
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces every record appended so far to the storage device.
+     */
+    public void sync() throws IOException {
+        force(appendedBytes);
+    }
+
+    /**
+     * Forces the records up to a position returned by {@link #append(String)} to the storage device.
+     */
+    public void force(long position) throws IOException {
+        if (forcedBytes >= position) {
+            return;
+        }
+        forceLock.lock();
+        try {
+            if (forcedBytes >= position) {
+                return;
+            }
+            // Covers the records of every writer that appended before this read, not only the caller's.
+            long target = appendedBytes;
+            channel.force(false);
+            forcedBytes = target;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    public long backlogBytes() {
+        return size - acknowledged;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long endOfLastRecord(long length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long chunkEnd = length;
+        while (chunkEnd > 0) {
+            long chunkStart = Math.max(0, chunkEnd - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (chunkEnd - chunkStart));
+            readFully(buffer, chunkStart);
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                if (buffer.get(i) == NEWLINE) {
+                    return chunkStart + i + 1;
+                }
+            }
+            chunkEnd = chunkStart;
+        }
+        return 0;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of history log at offset " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        String content = Files.readString(checkpointFile, StandardCharsets.US_ASCII).trim();
+        try {
+            return Long.parseLong(content);
+        } catch (NumberFormatException e) {
+            logger.warn("open: Ignoring unreadable history checkpoint '{}', replaying the whole log", content);
+            return 0;
+        }
+    }
+
+    private void writeCheckpoint(long offset) throws IOException {
+        Files.writeString(checkpointTempFile, Long.toString(offset), StandardCharsets.US_ASCII);
+        Files.move(checkpointTempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param endOffset the offset to acknowledge once this record and all before it are stored
+     */
+    public record Entry(String record, long endOffset) {
+    }
+}
@@ -0,0 +1,295 @@
+package org.challenge.locationmanagement.history;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.event.LocationChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records every committed location change in the location_history table without adding a
+ * database write to the request.
+ *
+ * Once a transaction commits, its changes are appended to a local write-ahead log and forced to
+ * disk before the request returns, in one force shared with the requests committing at the same
+ * time; a background writer drains the log into the table in batches. Only a crash between the
+ * database commit and that force loses changes. Each record carries a unique event id and is
+ * inserted with ON CONFLICT DO NOTHING, so records replayed after a crash between the insert and
+ * the checkpoint are stored once. While the database is unavailable the log grows, and once its
+ * backlog passes location.history.max-backlog-bytes writers are slowed down. When the log cannot
+ * be written, the records are inserted directly instead, and failing that they are kept in
+ * memory until the background writer gets them into the log.
+ */
+@Component
+public class LocationHistoryRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationHistoryRecorder.class);
+
+    private static final String INSERT_SQL = "INSERT INTO location_history "
+            + "(event_id, location_id, change_type, name, neighborhood, city, state, version, changed_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (event_id) DO NOTHING";
+    private static final int[] INSERT_TYPES = {Types.VARCHAR, Types.BIGINT, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.BIGINT, Types.TIMESTAMP};
+
+    private static final Duration MAX_BACKPRESSURE_WAIT = Duration.ofSeconds(2);
+    private static final long IDLE_WAIT_MILLIS = 1000;
+    private static final long MIN_RETRY_DELAY_MILLIS = 500;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate directTransactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Path walDirectory;
+    private final int batchSize;
+    private final long maxBacklogBytes;
+    private final Queue<HistoryRecord> unlogged = new ConcurrentLinkedQueue<>();
+
+    private HistoryWriteAheadLog wal;
+    private Thread writer;
+    private volatile boolean running;
+
+    public LocationHistoryRecorder(JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${location.history.enabled:true}") boolean enabled,
+                                   @Value("${location.history.wal-directory:data/history}") String walDirectory,
+                                   @Value("${location.history.batch-size:500}") int batchSize,
+                                   @Value("${location.history.max-backlog-bytes:67108864}") long maxBacklogBytes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Direct inserts run after the commit of the transaction that is still bound to the thread.
+        this.directTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.directTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.walDirectory = Path.of(walDirectory);
+        this.batchSize = batchSize;
+        this.maxBacklogBytes = maxBacklogBytes;
+    }
+
+    @EventListener
+    public void onLocationChanged(LocationChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(List.of(toRecord(event)));
+            return;
+        }
+        TransactionRecords transactionRecords = (TransactionRecords) TransactionSynchronizationManager.getResource(this);
+        if (transactionRecords == null) {
+            transactionRecords = new TransactionRecords();
+            TransactionSynchronizationManager.bindResource(this, transactionRecords);
+            TransactionSynchronizationManager.registerSynchronization(transactionRecords);
+        }
+        transactionRecords.records.add(toRecord(event));
+    }
+
+    private void record(List<HistoryRecord> records) {
+        try {
+            HistoryWriteAheadLog log = wal();
+            long position = 0;
+            for (HistoryRecord record : records) {
+                position = log.append(objectMapper.writeValueAsString(record));
+            }
+            log.force(position);
+        } catch (IOException e) {
+            // The changes are committed; failing the request now would only invite a retry. Records that did reach
+            // the log are inserted twice and stored once.
+            logger.error("record: Could not write {} records to the history log, inserting them directly", records.size(), e);
+            insertDirectly(records);
+        }
+    }
+
+    private void insertDirectly(List<HistoryRecord> records) {
+        try {
+            directTransactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, records.stream().map(LocationHistoryRecorder::toRow).toList(), INSERT_TYPES));
+        } catch (RuntimeException e) {
+            logger.error("insertDirectly: Could not insert {} history records, keeping them until the history log accepts them",
+                    records.size(), e);
+            unlogged.addAll(records);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() throws IOException {
+        if (!enabled || writer != null) {
+            return;
+        }
+        HistoryWriteAheadLog log = wal();
+        Gauge.builder("location.history.backlog", log, HistoryWriteAheadLog::backlogBytes)
+                .description("Bytes of location history waiting to be written to the database")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::drain, "location-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException, IOException {
+        running = false;
+        if (writer != null) {
+            writer.join(STOP_TIMEOUT_MILLIS);
+            writer = null;
+        }
+        if (wal != null) {
+            // Whatever is left is written on the next start.
+            wal.close();
+        }
+    }
+
+    private synchronized HistoryWriteAheadLog wal() throws IOException {
+        if (wal == null) {
+            wal = new HistoryWriteAheadLog(walDirectory, maxBacklogBytes, MAX_BACKPRESSURE_WAIT);
+        }
+        return wal;
+    }
+
+    private void drain() {
+        long retryDelay = MIN_RETRY_DELAY_MILLIS;
+        while (running) {
+            try {
+                if (flush() == 0) {
+                    wal.awaitRecords(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                retryDelay = MIN_RETRY_DELAY_MILLIS;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("drain: Could not write location history, retrying in {} ms", retryDelay, e);
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Writes one batch of pending records to the database.
+     *
+     * @return the number of records taken from the log
+     */
+    int flush() throws IOException {
+        HistoryRecord record;
+        while ((record = unlogged.peek()) != null) {
+            wal.append(objectMapper.writeValueAsString(record));
+            unlogged.poll();
+        }
+        wal.sync();
+        List<HistoryWriteAheadLog.Entry> entries = wal.read(batchSize);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        List<Object[]> rows = new ArrayList<>(entries.size());
+        for (HistoryWriteAheadLog.Entry entry : entries) {
+            try {
+                rows.add(toRow(objectMapper.readValue(entry.record(), HistoryRecord.class)));
+            } catch (JsonProcessingException e) {
+                logger.error("flush: Skipping unreadable history record: {}", entry.record(), e);
+            }
+        }
+        if (!rows.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, rows, INSERT_TYPES));
+        }
+
+        wal.acknowledge(entries.get(entries.size() - 1).endOffset());
+        logger.debug("flush: Wrote {} location history records", rows.size());
+        return entries.size();
+    }
+
+    static HistoryRecord toRecord(LocationChangedEvent event) {
+        String eventId = UUID.randomUUID().toString();
+        LocationDto location = event.location();
+        if (location == null) {
+            return new HistoryRecord(eventId, event.locationId(), event.type().name(), null, null, null, null, null,
+                    LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MICROS));
+        }
+        LocalDateTime changedAt = location.getUpdatedAt() != null
+                ? location.getUpdatedAt()
+                : LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MICROS);
+        return new HistoryRecord(eventId, event.locationId(), event.type().name(), location.getName(),
+                location.getNeighborhood(), location.getCity(), location.getState(), location.getVersion(), changedAt);
+    }
+
+    private static Object[] toRow(HistoryRecord record) {
+        return new Object[]{record.eventId(), record.locationId(), record.changeType(), record.name(),
+                record.neighborhood(), record.city(), record.state(), record.version(),
+                Timestamp.valueOf(record.changedAt())};
+    }
+
+    private final class TransactionRecords implements TransactionSynchronization {
+        private final List<HistoryRecord> records = new ArrayList<>();
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(LocationHistoryRecorder.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(LocationHistoryRecorder.this, this);
+        }
+
+        @Override
+        public void afterCommit() {
+            record(records);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(LocationHistoryRecorder.this);
+        }
+    }
+
+    /**
+     * One line of the write-ahead log.
+     */
+    record HistoryRecord(String eventId, Long locationId, String changeType, String name, String neighborhood,
+                         String city, String state, Long version, LocalDateTime changedAt) {
+    }
+}
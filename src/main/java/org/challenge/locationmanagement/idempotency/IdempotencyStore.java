@@ -0,0 +1,159 @@
+package org.challenge.locationmanagement.idempotency;
+
+import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.exception.ResourceBadRequestException;
+import org.challenge.locationmanagement.exception.ResourceConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * In-process store of Idempotency-Key to the location created for it.
+ *
+ * The first request for a key runs the action; concurrent requests with the same key wait for
+ * that result instead of inserting again, and later retries are answered from memory. Failed
+ * actions are forgotten so the client can retry them. Entries expire after a fixed TTL and the
+ * store holds no more than a fixed number of completed ones, dropping the oldest first; entries
+ * whose action is still running are never dropped, so a retry cannot run the action again.
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long waitTimeoutNanos;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Entries share one TTL, so insertion order is also expiry order.
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    public IdempotencyStore() {
+        this(10_000, Duration.ofHours(24), Duration.ofSeconds(30));
+    }
+
+    IdempotencyStore(int maxEntries, Duration ttl, Duration waitTimeout) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+    }
+
+    public Result execute(String key, LocationDto request, Supplier<LocationDto> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new ResourceBadRequestException("The 'Idempotency-Key' header must have between 1 and " + MAX_KEY_LENGTH + " characters.");
+        }
+
+        String fingerprint = fingerprint(request);
+        long now = System.nanoTime();
+        evictExpired(now);
+
+        Entry entry = new Entry(key, fingerprint, now + ttlNanos);
+        Entry existing;
+        while ((existing = entries.putIfAbsent(key, entry)) != null && existing.isExpired(now)) {
+            entries.remove(key, existing);
+        }
+
+        if (existing != null) {
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new ResourceBadRequestException("The 'Idempotency-Key' " + key + " was already used with a different request body.");
+            }
+            logger.info("execute: Replaying result for Idempotency-Key {}", key);
+            return new Result(await(existing), true);
+        }
+
+        insertionOrder.add(entry);
+        trimToCapacity();
+
+        try {
+            LocationDto result = action.get();
+            entry.result.complete(result);
+            return new Result(result, false);
+        } catch (RuntimeException e) {
+            entries.remove(key, entry);
+            insertionOrder.remove(entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    int queuedSize() {
+        return insertionOrder.size();
+    }
+
+    private LocationDto await(Entry entry) {
+        try {
+            return entry.result.get(waitTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ResourceConflictException("A request with the 'Idempotency-Key' " + entry.key + " is still being processed.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceConflictException("A request with the 'Idempotency-Key' " + entry.key + " is still being processed.");
+        }
+    }
+
+    private void evictExpired(long now) {
+        Entry head;
+        while ((head = insertionOrder.peek()) != null && head.isExpired(now)) {
+            if (insertionOrder.remove(head)) {
+                entries.remove(head.key, head);
+            }
+        }
+    }
+
+    private void trimToCapacity() {
+        Iterator<Entry> oldestFirst = insertionOrder.iterator();
+        while (entries.size() > maxEntries && oldestFirst.hasNext()) {
+            Entry oldest = oldestFirst.next();
+            if (oldest.result.isDone() && insertionOrder.remove(oldest)) {
+                entries.remove(oldest.key, oldest);
+            }
+        }
+    }
+
+    private static String fingerprint(LocationDto request) {
+        return String.join("\u0000", String.valueOf(request.getName()), String.valueOf(request.getNeighborhood()),
+                String.valueOf(request.getCity()), String.valueOf(request.getState()));
+    }
+
+    /**
+     * @param replayed true when the location was created by an earlier request with the same key
+     */
+    public record Result(LocationDto location, boolean replayed) {
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final String fingerprint;
+        private final long expiresAt;
+        private final CompletableFuture<LocationDto> result = new CompletableFuture<>();
+
+        private Entry(String key, String fingerprint, long expiresAt) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt > 0;
+        }
+    }
+}
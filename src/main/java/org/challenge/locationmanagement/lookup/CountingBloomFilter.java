@@ -0,0 +1,95 @@
+package org.challenge.locationmanagement.lookup;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counting Bloom filter over long values with 4-bit counters packed sixteen to a word.
+ *
+ * mightContain never returns false for a value that was added and not removed; it returns true
+ * for a value that was never added with roughly the configured false positive rate. Counters
+ * are updated with CAS, so all operations are lock-free. A counter that reaches its maximum
+ * stays there: decrementing it could turn a present value into a false negative.
+ */
+public class CountingBloomFilter {
+
+    private static final int COUNTER_BITS = 4;
+    private static final int COUNTERS_PER_WORD = Long.SIZE / COUNTER_BITS;
+    private static final long COUNTER_MAX = (1L << COUNTER_BITS) - 1;
+
+    private final AtomicLongArray words;
+    private final int numCounters;
+    private final int numHashes;
+
+    public CountingBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        double bits = -n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.numCounters = (int) Math.min(Integer.MAX_VALUE - COUNTERS_PER_WORD, Math.max(COUNTERS_PER_WORD, Math.ceil(bits)));
+        this.numHashes = Math.max(1, (int) Math.round((double) numCounters / n * Math.log(2)));
+        this.words = new AtomicLongArray((numCounters + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+    }
+
+    public void add(long value) {
+        long hash = mix(value);
+        for (int i = 0; i < numHashes; i++) {
+            update(index(hash, i), 1);
+        }
+    }
+
+    public void remove(long value) {
+        long hash = mix(value);
+        for (int i = 0; i < numHashes; i++) {
+            update(index(hash, i), -1);
+        }
+    }
+
+    public boolean mightContain(long value) {
+        long hash = mix(value);
+        for (int i = 0; i < numHashes; i++) {
+            int index = index(hash, i);
+            if (counter(words.get(index / COUNTERS_PER_WORD), index) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the memory used by the counters, in bytes
+     */
+    public long sizeInBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    private void update(int index, int delta) {
+        int word = index / COUNTERS_PER_WORD;
+        int shift = (index % COUNTERS_PER_WORD) * COUNTER_BITS;
+        long current;
+        long updated;
+        do {
+            current = words.get(word);
+            long count = (current >>> shift) & COUNTER_MAX;
+            if (count == COUNTER_MAX || (delta < 0 && count == 0)) {
+                return;
+            }
+            updated = current + ((long) delta << shift);
+        } while (!words.compareAndSet(word, current, updated));
+    }
+
+    private static long counter(long word, int index) {
+        return (word >>> ((index % COUNTERS_PER_WORD) * COUNTER_BITS)) & COUNTER_MAX;
+    }
+
+    // Kirsch-Mitzenmacher double hashing over the two halves of a 64-bit mix.
+    private int index(long hash, int i) {
+        int combined = (int) hash + i * (int) (hash >>> 32);
+        return (combined & Integer.MAX_VALUE) % numCounters;
+    }
+
+    // SplitMix64 finalizer: sequential ids spread uniformly over the counters.
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,281 @@
+package org.challenge.locationmanagement.lookup;
+
+import jakarta.annotation.PreDestroy;
+import org.challenge.locationmanagement.entity.Location;
+import org.challenge.locationmanagement.event.LocationChangedEvent;
+import org.challenge.locationmanagement.repository.LocationRepository;
+import org.challenge.locationmanagement.service.ChangeClock;
+import org.challenge.locationmanagement.service.ChangeCursor;
+import org.challenge.locationmanagement.sharding.ShardContext;
+import org.challenge.locationmanagement.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory membership filter of existing location ids, used to answer lookups of ids that
+ * certainly do not exist without a database query.
+ *
+ * The filter is built in the background once the application is ready; until then every id is
+ * reported as possibly present. Locations are also created by other instances and by the batch
+ * path, which this instance hears nothing about, so the filter only rules out ids up to a
+ * high-water mark per shard, below which it has seen every committed id: the last id created a
+ * settle window before the latest refresh, as ids are allocated while their transaction runs and
+ * every transaction commits within the settle window. Larger ids always fall back to the
+ * database. Every refresh-seconds the filter reads the ids allocated since the mark, and the
+ * change feed, which brings back restored locations with their old ids. A snapshot restore runs
+ * in a process of its own, so until that refresh the restored ids would be reported absent;
+ * {@link #rebuild()}, exposed as the idfilter actuator endpoint, closes that gap.
+ *
+ * Ids are removed only after their local delete commits; deletions through other instances, or
+ * while the filter is being built, are not applied: they can only leave false positives behind,
+ * which fall back to the database.
+ */
+@Component
+public class LocationIdFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationIdFilter.class);
+
+    private static final int SCAN_BATCH_SIZE = 10_000;
+    private static final int FEED_BATCH_SIZE = 1_000;
+
+    private final LocationRepository locationRepository;
+    private final ShardRouter shardRouter;
+    private final ChangeClock changeClock;
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final long refreshSeconds;
+
+    private final AtomicLongArray highWaterMarks;
+    private final ChangeCursor[] changeCursors;
+
+    private volatile CountingBloomFilter building;
+    private volatile CountingBloomFilter filter;
+    private volatile ScheduledExecutorService refresher;
+
+    public LocationIdFilter(LocationRepository locationRepository,
+                            ShardRouter shardRouter,
+                            ChangeClock changeClock,
+                            @Value("${location.id-filter.enabled:true}") boolean enabled,
+                            @Value("${location.id-filter.expected-insertions:1000000}") long expectedInsertions,
+                            @Value("${location.id-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                            @Value("${location.id-filter.refresh-seconds:30}") long refreshSeconds) {
+        this.locationRepository = locationRepository;
+        this.shardRouter = shardRouter;
+        this.changeClock = changeClock;
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.refreshSeconds = refreshSeconds;
+        this.highWaterMarks = new AtomicLongArray(shardRouter.shardCount());
+        this.changeCursors = new ChangeCursor[shardRouter.shardCount()];
+    }
+
+    /**
+     * @return true only if no location with this id exists
+     */
+    public boolean isDefinitelyAbsent(long locationId) {
+        CountingBloomFilter current = filter;
+        return current != null
+                && locationId <= highWaterMarks.get(shardRouter.shardForId(locationId))
+                && !current.mightContain(locationId);
+    }
+
+    public boolean isReady() {
+        return filter != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildInBackground() {
+        if (!enabled) {
+            return;
+        }
+        Thread builder = new Thread(this::build, "location-id-filter-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * Drops the filter, so every lookup goes to the database straight away, and builds it again in
+     * the background. For use after locations were written back with their old ids, as by a
+     * snapshot restore.
+     */
+    public synchronized void rebuild() {
+        if (!enabled || building != null) {
+            return;
+        }
+        filter = null;
+        logger.info("rebuild: Location id filter dropped, lookups hit the database until it is rebuilt");
+        buildInBackground();
+    }
+
+    void build() {
+        try {
+            long started = System.nanoTime();
+            long count = shardRouter.shards()
+                    .mapToLong(shard -> ShardContext.call(shard, locationRepository::count))
+                    .sum();
+            CountingBloomFilter next = new CountingBloomFilter(Math.max(expectedInsertions, 2 * count), falsePositiveRate);
+            building = next;
+
+            long added = 0;
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                int current = shard;
+                added += ShardContext.call(shard, () -> buildShard(current, next));
+            }
+
+            filter = next;
+            building = null;
+            logger.info("build: Location id filter ready with {} ids, {} KB, in {} ms",
+                    added, next.sizeInBytes() / 1024, (System.nanoTime() - started) / 1_000_000);
+            scheduleRefresh();
+        } catch (RuntimeException e) {
+            building = null;
+            logger.error("build: Could not build the location id filter, lookups will always hit the database", e);
+        }
+    }
+
+    private long buildShard(int shard, CountingBloomFilter target) {
+        // Both taken before the scan, so the scan sees every id below the mark and every change after the cursor.
+        LocalDateTime upTo = changeClock.settledUpTo();
+        long highWaterMark = lastIdCreatedBefore(upTo);
+        changeCursors[shard] = new ChangeCursor(upTo, 0);
+        long added = scanIds(target, 0, Long.MAX_VALUE);
+        highWaterMarks.set(shard, highWaterMark);
+        return added;
+    }
+
+    /**
+     * @return the last id whose transaction started a settle window before upTo: every smaller id
+     * was allocated, and so committed or rolled back, by upTo
+     */
+    private long lastIdCreatedBefore(LocalDateTime upTo) {
+        List<Long> ids = locationRepository.findIdsCreatedUpTo(upTo.minus(changeClock.settleWindow()), PageRequest.of(0, 1));
+        return ids.isEmpty() ? 0 : ids.get(0);
+    }
+
+    private long scanIds(CountingBloomFilter target, long afterId, long upToId) {
+        long added = 0;
+        List<Long> ids;
+        do {
+            ids = locationRepository.findIdsAfter(afterId, PageRequest.of(0, SCAN_BATCH_SIZE));
+            for (Long id : ids) {
+                if (id > upToId) {
+                    return added;
+                }
+                target.add(id);
+                added++;
+            }
+            if (!ids.isEmpty()) {
+                afterId = ids.get(ids.size() - 1);
+            }
+        } while (ids.size() == SCAN_BATCH_SIZE);
+        return added;
+    }
+
+    private synchronized void scheduleRefresh() {
+        if (refresher != null || refreshSeconds <= 0) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "location-id-filter-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Adds the ids committed through any instance since the last refresh and raises the high-water marks.
+     */
+    void refresh() {
+        CountingBloomFilter current = filter;
+        if (current == null) {
+            return;
+        }
+        try {
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                int index = shard;
+                ShardContext.run(shard, () -> refreshShard(index, current));
+            }
+        } catch (RuntimeException e) {
+            logger.warn("refresh: Could not refresh the location id filter, retrying in {} s", refreshSeconds, e);
+        }
+    }
+
+    private void refreshShard(int shard, CountingBloomFilter target) {
+        LocalDateTime upTo = changeClock.settledUpTo();
+        long highWaterMark = highWaterMarks.get(shard);
+        long nextHighWaterMark = Math.max(highWaterMark, lastIdCreatedBefore(upTo));
+        scanIds(target, highWaterMark, nextHighWaterMark);
+
+        // Restored locations come back below the mark, with a fresh updated_at.
+        List<Location> changed;
+        do {
+            ChangeCursor cursor = changeCursors[shard];
+            changed = locationRepository.findChangedSince(cursor.changedAt(), cursor.id(), upTo,
+                    PageRequest.of(0, FEED_BATCH_SIZE));
+            for (Location location : changed) {
+                if (location.getId() <= nextHighWaterMark) {
+                    target.add(location.getId());
+                }
+            }
+            if (!changed.isEmpty()) {
+                Location last = changed.get(changed.size() - 1);
+                changeCursors[shard] = new ChangeCursor(last.getUpdatedAt(), last.getId());
+            }
+        } while (changed.size() == FEED_BATCH_SIZE);
+
+        highWaterMarks.set(shard, nextHighWaterMark);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ScheduledExecutorService executor = refresher;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onLocationWritten(LocationChangedEvent event) {
+        if (event.type() != LocationChangedEvent.Type.CREATED) {
+            return;
+        }
+        // Add to the filter under construction as well, in case the scan already passed this id.
+        CountingBloomFilter pending = building;
+        if (pending != null) {
+            pending.add(event.locationId());
+        }
+        CountingBloomFilter current = filter;
+        if (current != null && current != pending) {
+            current.add(event.locationId());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onLocationCommitted(LocationChangedEvent event) {
+        if (event.type() != LocationChangedEvent.Type.DELETED || building != null) {
+            return;
+        }
+        // Ids above the mark may never have been added, and removing them would clear other ids' counters.
+        CountingBloomFilter current = filter;
+        if (current != null && event.locationId() <= highWaterMarks.get(shardRouter.shardForId(event.locationId()))) {
+            current.remove(event.locationId());
+        }
+    }
+}
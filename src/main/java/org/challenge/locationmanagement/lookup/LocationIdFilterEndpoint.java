@@ -0,0 +1,33 @@
+package org.challenge.locationmanagement.lookup;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint to rebuild the {@link LocationIdFilter} of this instance, e.g. after a
+ * snapshot restore. Not exposed over HTTP unless added to management.endpoints.web.exposure.include.
+ */
+@Component
+@Endpoint(id = "idfilter")
+public class LocationIdFilterEndpoint {
+
+    private final LocationIdFilter locationIdFilter;
+
+    public LocationIdFilterEndpoint(LocationIdFilter locationIdFilter) {
+        this.locationIdFilter = locationIdFilter;
+    }
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return Map.of("ready", locationIdFilter.isReady());
+    }
+
+    @WriteOperation
+    public void rebuild() {
+        locationIdFilter.rebuild();
+    }
+}
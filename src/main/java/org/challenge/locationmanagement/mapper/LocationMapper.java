@@ -1,10 +1,28 @@
 package org.challenge.locationmanagement.mapper;
 
 import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.dto.LocationHistoryDto;
+import org.challenge.locationmanagement.dto.LocationUpsertDto;
 import org.challenge.locationmanagement.entity.Location;
+import org.challenge.locationmanagement.entity.LocationHistory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 public class LocationMapper {
 
+    private static final Map<String, Function<LocationDto, Object>> PROPERTIES = Map.of(
+            "id", LocationDto::getId,
+            "name", LocationDto::getName,
+            "neighborhood", LocationDto::getNeighborhood,
+            "city", LocationDto::getCity,
+            "state", LocationDto::getState,
+            "createdAt", LocationDto::getCreatedAt,
+            "updatedAt", LocationDto::getUpdatedAt,
+            "version", LocationDto::getVersion);
+
     public static LocationDto mapToLocationDto(Location location) {
         return new LocationDto(
                 location.getId(),
@@ -13,7 +31,9 @@ public class LocationMapper {
                 location.getCity(),
                 location.getState(),
                 location.getCreatedAt(),
-                location.getUpdatedAt()
+                location.getUpdatedAt(),
+                location.getVersion(),
+                location.getExternalRef()
         );
     }
 
@@ -25,4 +45,47 @@ public class LocationMapper {
                 locationDto.getState()
         );
     }
-}
\ No newline at end of file
+
+    public static Location mapToLocation(LocationUpsertDto locationUpsertDto) {
+        Location location = new Location(
+                locationUpsertDto.getName(),
+                locationUpsertDto.getNeighborhood(),
+                locationUpsertDto.getCity(),
+                locationUpsertDto.getState()
+        );
+        location.setExternalRef(locationUpsertDto.getExternalRef());
+        return location;
+    }
+
+    public static LocationHistoryDto mapToLocationHistoryDto(LocationHistory locationHistory) {
+        return new LocationHistoryDto(
+                locationHistory.getLocationId(),
+                locationHistory.getChangeType(),
+                locationHistory.getName(),
+                locationHistory.getNeighborhood(),
+                locationHistory.getCity(),
+                locationHistory.getState(),
+                locationHistory.getVersion(),
+                locationHistory.getChangedAt()
+        );
+    }
+
+    /**
+     * @param property a name from {@link org.challenge.locationmanagement.repository.LocationRepositoryCustom#PROJECTABLE_FIELDS}
+     */
+    public static Object getProperty(LocationDto locationDto, String property) {
+        Function<LocationDto, Object> getter = PROPERTIES.get(property);
+        if (getter == null) {
+            throw new IllegalArgumentException("Unknown location property: " + property);
+        }
+        return getter.apply(locationDto);
+    }
+
+    public static Map<String, Object> mapToFields(LocationDto locationDto, List<String> fields) {
+        Map<String, Object> row = new LinkedHashMap<>((int) (fields.size() / 0.75f) + 1);
+        for (String field : fields) {
+            row.put(field, getProperty(locationDto, field));
+        }
+        return row;
+    }
+}
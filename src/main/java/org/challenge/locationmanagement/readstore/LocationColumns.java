@@ -0,0 +1,424 @@
+package org.challenge.locationmanagement.readstore;
+
+import org.challenge.locationmanagement.dto.LocationDto;
+import org.springframework.data.domain.Sort;
+
+import java.text.Collator;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable column-oriented copy of a set of locations, ordered by id.
+ *
+ * Each column is a primitive array. Strings are dictionary-encoded: every distinct value is
+ * stored once, and since the dictionary is sorted in the collation of the database, comparing
+ * two codes compares their strings as the database would. Timestamps are epoch microseconds in
+ * UTC. External references are unique per row and kept as plain strings, null for rows without
+ * one; they are not part of the API and only carried into snapshots. Row orders for a given sort are computed on first use and the most recently used ones
+ * are kept with the columns.
+ */
+final class LocationColumns {
+
+    static final LocationColumns EMPTY = new Builder(0).build();
+
+    static final int NULL_CODE = -1;
+    static final long NULL_LONG = Long.MIN_VALUE;
+
+    private static final int MAX_CACHED_ORDERS = 16;
+
+    final int size;
+    final long[] ids;
+    final int[] names;
+    final int[] neighborhoods;
+    final int[] cities;
+    final int[] states;
+    final long[] createdAt;
+    final long[] updatedAt;
+    final long[] versions;
+    final String[] externalRefs;
+    final String[] dictionary;
+
+    // Least recently used first; guarded by itself.
+    private final Map<Sort, int[]> orders = new LinkedHashMap<>(MAX_CACHED_ORDERS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Sort, int[]> eldest) {
+            return size() > MAX_CACHED_ORDERS;
+        }
+    };
+
+    LocationColumns(int size, long[] ids, int[] names, int[] neighborhoods, int[] cities, int[] states,
+                    long[] createdAt, long[] updatedAt, long[] versions, String[] externalRefs, String[] dictionary) {
+        this.size = size;
+        this.ids = ids;
+        this.names = names;
+        this.neighborhoods = neighborhoods;
+        this.cities = cities;
+        this.states = states;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.versions = versions;
+        this.externalRefs = externalRefs;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @return the row of the location with this id, or a negative number if there is none
+     */
+    int indexOf(long id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+
+    long id(int row) {
+        return ids[row];
+    }
+
+    Long version(int row) {
+        return versions[row] == NULL_LONG ? null : versions[row];
+    }
+
+    LocationDto toDto(int row) {
+        return new LocationDto(ids[row], string(names[row]), string(neighborhoods[row]), string(cities[row]),
+                string(states[row]), toDateTime(createdAt[row]), toDateTime(updatedAt[row]), version(row),
+                externalRefs[row]);
+    }
+
+    /**
+     * @param property a name from {@link org.challenge.locationmanagement.repository.LocationRepositoryCustom#PROJECTABLE_FIELDS}
+     */
+    Object value(int row, String property) {
+        return switch (property) {
+            case "id" -> ids[row];
+            case "name" -> string(names[row]);
+            case "neighborhood" -> string(neighborhoods[row]);
+            case "city" -> string(cities[row]);
+            case "state" -> string(states[row]);
+            case "createdAt" -> toDateTime(createdAt[row]);
+            case "updatedAt" -> toDateTime(updatedAt[row]);
+            case "version" -> version(row);
+            default -> throw new IllegalArgumentException("Unknown location property: " + property);
+        };
+    }
+
+    /**
+     * Rows in the given order, ties broken by id. Null values sort last when ascending and
+     * first when descending, as in PostgreSQL.
+     */
+    int[] order(Sort sort) {
+        synchronized (orders) {
+            int[] cached = orders.get(sort);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = i;
+        }
+        // Rows are in id order and the sort is stable, so equal rows stay in id order.
+        IntComparator comparator = comparator(sort);
+        mergeSort(rows, new int[size], 0, size, comparator);
+
+        synchronized (orders) {
+            orders.put(sort, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * @return the sorts whose orders are cached, most recently used last
+     */
+    List<Sort> cachedSorts() {
+        synchronized (orders) {
+            return List.copyOf(orders.keySet());
+        }
+    }
+
+    /**
+     * @return true if every string of the dictionary sorts after the previous one in this collation
+     */
+    boolean isDictionarySorted(Comparator<String> collation) {
+        for (int code = 1; code < dictionary.length; code++) {
+            if (collation.compare(dictionary[code - 1], dictionary[code]) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private IntComparator comparator(Sort sort) {
+        IntComparator result = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            IntComparator column = switch (order.getProperty()) {
+                case "id" -> (a, b) -> Long.compare(ids[a], ids[b]);
+                case "name" -> codes(names);
+                case "neighborhood" -> codes(neighborhoods);
+                case "city" -> codes(cities);
+                case "state" -> codes(states);
+                case "createdAt" -> longs(createdAt);
+                case "updatedAt" -> longs(updatedAt);
+                case "version" -> longs(versions);
+                default -> throw new IllegalArgumentException("Unknown location property: " + order.getProperty());
+            };
+            IntComparator directed = order.isAscending() ? column : (a, b) -> column.compare(b, a);
+            IntComparator previous = result;
+            result = (a, b) -> {
+                int byPrevious = previous.compare(a, b);
+                return byPrevious != 0 ? byPrevious : directed.compare(a, b);
+            };
+        }
+        return result;
+    }
+
+    private static IntComparator codes(int[] column) {
+        return (a, b) -> {
+            int x = column[a];
+            int y = column[b];
+            if (x == y) {
+                return 0;
+            }
+            return x == NULL_CODE ? 1 : y == NULL_CODE ? -1 : Integer.compare(x, y);
+        };
+    }
+
+    private static IntComparator longs(long[] column) {
+        return (a, b) -> {
+            long x = column[a];
+            long y = column[b];
+            if (x == y) {
+                return 0;
+            }
+            return x == NULL_LONG ? 1 : y == NULL_LONG ? -1 : Long.compare(x, y);
+        };
+    }
+
+    private static void mergeSort(int[] rows, int[] buffer, int from, int to, IntComparator comparator) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(rows, buffer, from, middle, comparator);
+        mergeSort(rows, buffer, middle, to, comparator);
+        if (comparator.compare(rows[middle - 1], rows[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(rows, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+                rows[i] = buffer[left++];
+            } else {
+                rows[i] = buffer[right++];
+            }
+        }
+    }
+
+    private String string(int code) {
+        return code == NULL_CODE ? null : dictionary[code];
+    }
+
+    /**
+     * Order of strings in a database collation.
+     *
+     * @param languageTag a BCP 47 tag such as en-US, matching the database collation; C or POSIX
+     *                    for a database that compares bytes
+     */
+    static Comparator<String> collation(String languageTag) {
+        String tag = languageTag.trim();
+        if (tag.isEmpty() || tag.equalsIgnoreCase("C") || tag.equalsIgnoreCase("POSIX")) {
+            // UTF-16 order, which is byte order for every character outside the supplementary planes.
+            return Comparator.naturalOrder();
+        }
+        Collator collator = Collator.getInstance(Locale.forLanguageTag(tag.replace('_', '-')));
+        collator.setStrength(Collator.TERTIARY);
+        // Strings the collator considers equal are ordered by code, as deterministic database collations do.
+        Comparator<String> collated = collator::compare;
+        return collated.thenComparing(Comparator.naturalOrder());
+    }
+
+    static long toMicros(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return NULL_LONG;
+        }
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + dateTime.getNano() / 1_000;
+    }
+
+    static LocalDateTime toDateTime(long micros) {
+        if (micros == NULL_LONG) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    @FunctionalInterface
+    private interface IntComparator {
+        int compare(int a, int b);
+    }
+
+    /**
+     * Accumulates rows in any id order. Equal strings share a single instance.
+     */
+    static final class Builder {
+
+        private int size;
+        private long[] ids;
+        private int[] names;
+        private int[] neighborhoods;
+        private int[] cities;
+        private int[] states;
+        private long[] createdAt;
+        private long[] updatedAt;
+        private long[] versions;
+        private String[] externalRefs;
+        private boolean inIdOrder = true;
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final Comparator<String> collation;
+
+        Builder(int expectedSize) {
+            this(expectedSize, Comparator.naturalOrder());
+        }
+
+        /**
+         * @param collation the order of the dictionary; see {@link #collation(String)}
+         */
+        Builder(int expectedSize, Comparator<String> collation) {
+            this.collation = collation;
+            int capacity = Math.max(expectedSize, 16);
+            ids = new long[capacity];
+            names = new int[capacity];
+            neighborhoods = new int[capacity];
+            cities = new int[capacity];
+            states = new int[capacity];
+            createdAt = new long[capacity];
+            updatedAt = new long[capacity];
+            versions = new long[capacity];
+            externalRefs = new String[capacity];
+        }
+
+        Builder add(LocationDto location) {
+            return add(location.getId(), location.getName(), location.getNeighborhood(), location.getCity(),
+                    location.getState(), toMicros(location.getCreatedAt()), toMicros(location.getUpdatedAt()),
+                    location.getVersion() == null ? NULL_LONG : location.getVersion(), location.getExternalRef());
+        }
+
+        Builder add(LocationColumns source, int row) {
+            return add(source.ids[row], source.string(source.names[row]), source.string(source.neighborhoods[row]),
+                    source.string(source.cities[row]), source.string(source.states[row]),
+                    source.createdAt[row], source.updatedAt[row], source.versions[row], source.externalRefs[row]);
+        }
+
+        Builder add(long id, String name, String neighborhood, String city, String state,
+                    long createdAtMicros, long updatedAtMicros, long version, String externalRef) {
+            if (size == ids.length) {
+                grow();
+            }
+            if (size > 0 && ids[size - 1] >= id) {
+                inIdOrder = false;
+            }
+            ids[size] = id;
+            names[size] = code(name);
+            neighborhoods[size] = code(neighborhood);
+            cities[size] = code(city);
+            states[size] = code(state);
+            createdAt[size] = createdAtMicros;
+            updatedAt[size] = updatedAtMicros;
+            versions[size] = version;
+            externalRefs[size] = externalRef;
+            size++;
+            return this;
+        }
+
+        int size() {
+            return size;
+        }
+
+        LocationColumns build() {
+            // Renumber the codes so that their order is the order of the strings.
+            String[] dictionary = strings.toArray(new String[0]);
+            Arrays.sort(dictionary, collation);
+            int[] remap = new int[dictionary.length];
+            for (int code = 0; code < dictionary.length; code++) {
+                remap[codes.get(dictionary[code])] = code;
+            }
+
+            int[] rows = new int[size];
+            for (int i = 0; i < size; i++) {
+                rows[i] = i;
+            }
+            if (!inIdOrder) {
+                long[] keys = ids;
+                mergeSort(rows, new int[size], 0, size, (a, b) -> Long.compare(keys[a], keys[b]));
+                for (int i = 1; i < size; i++) {
+                    if (ids[rows[i - 1]] == ids[rows[i]]) {
+                        throw new IllegalStateException("Duplicate location id " + ids[rows[i]]);
+                    }
+                }
+            }
+
+            long[] sortedIds = new long[size];
+            int[] sortedNames = new int[size];
+            int[] sortedNeighborhoods = new int[size];
+            int[] sortedCities = new int[size];
+            int[] sortedStates = new int[size];
+            long[] sortedCreatedAt = new long[size];
+            long[] sortedUpdatedAt = new long[size];
+            long[] sortedVersions = new long[size];
+            String[] sortedExternalRefs = new String[size];
+            for (int i = 0; i < size; i++) {
+                int row = rows[i];
+                sortedIds[i] = ids[row];
+                sortedNames[i] = remap(remap, names[row]);
+                sortedNeighborhoods[i] = remap(remap, neighborhoods[row]);
+                sortedCities[i] = remap(remap, cities[row]);
+                sortedStates[i] = remap(remap, states[row]);
+                sortedCreatedAt[i] = createdAt[row];
+                sortedUpdatedAt[i] = updatedAt[row];
+                sortedVersions[i] = versions[row];
+                sortedExternalRefs[i] = externalRefs[row];
+            }
+            return new LocationColumns(size, sortedIds, sortedNames, sortedNeighborhoods, sortedCities, sortedStates,
+                    sortedCreatedAt, sortedUpdatedAt, sortedVersions, sortedExternalRefs, dictionary);
+        }
+
+        private int code(String value) {
+            if (value == null) {
+                return NULL_CODE;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = strings.size();
+                codes.put(value, code);
+                strings.add(value);
+            }
+            return code;
+        }
+
+        private static int remap(int[] remap, int code) {
+            return code == NULL_CODE ? NULL_CODE : remap[code];
+        }
+
+        private void grow() {
+            int capacity = ids.length + (ids.length >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            neighborhoods = Arrays.copyOf(neighborhoods, capacity);
+            cities = Arrays.copyOf(cities, capacity);
+            states = Arrays.copyOf(states, capacity);
+            createdAt = Arrays.copyOf(createdAt, capacity);
+            updatedAt = Arrays.copyOf(updatedAt, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            externalRefs = Arrays.copyOf(externalRefs, capacity);
+        }
+    }
+}
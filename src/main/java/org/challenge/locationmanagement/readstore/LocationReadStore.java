@@ -0,0 +1,661 @@
+package org.challenge.locationmanagement.readstore;
+
+import jakarta.annotation.PreDestroy;
+import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.entity.Location;
+import org.challenge.locationmanagement.entity.LocationTombstone;
+import org.challenge.locationmanagement.event.LocationChangedEvent;
+import org.challenge.locationmanagement.mapper.LocationMapper;
+import org.challenge.locationmanagement.repository.LocationRepository;
+import org.challenge.locationmanagement.repository.LocationRepositoryCustom;
+import org.challenge.locationmanagement.repository.LocationTombstoneRepository;
+import org.challenge.locationmanagement.service.ChangeClock;
+import org.challenge.locationmanagement.service.ChangeCursor;
+import org.challenge.locationmanagement.sharding.ShardContext;
+import org.challenge.locationmanagement.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Optional in-process copy of every location, serving reads without a database query.
+ *
+ * The store is a {@link LocationColumns} base plus a small overlay of locations changed since
+ * the base was built and the set of base rows deleted since, both {@link PersistentLongMap}s.
+ * Each write publishes a new immutable view that shares all but the changed path with the
+ * previous one, so writes cost the same however large the overlay, and readers never wait for a
+ * writer and always see a consistent state. Once the overlay and the deletions together grow
+ * past a threshold they are folded into a new base in the background, which also precomputes the
+ * row orders in use on the old base.
+ *
+ * Strings are ordered in the collation given by location.read-store.collation, which should
+ * match the database's so pages come out in the order the database would return them.
+ *
+ * Committed changes of this instance are applied as they happen; changes made through other
+ * instances are picked up from the change feed every location.read-store.refresh-seconds.
+ * A change is applied only if it carries a newer version than the one held, and a deleted id
+ * is not brought back by a change that was read before the delete.
+ *
+ * When location.read-store.snapshot.path is set, the contents are written to a
+ * {@link LocationSnapshotFile} periodically and at shutdown, and the next start loads that file
+ * instead of scanning the table, then catches up on the changes after its high-water mark
+ * before serving.
+ */
+@Component
+public class LocationReadStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationReadStore.class);
+
+    private static final int LOAD_BATCH_SIZE = 10_000;
+    private static final int REFRESH_BATCH_SIZE = 1_000;
+    private static final int COMPACTION_THRESHOLD = 4_096;
+    private static final int MAX_CACHED_OVERLAYS = 16;
+
+    private static final Duration DELETE_RETENTION = Duration.ofMinutes(10);
+    private static final long STOP_TIMEOUT_SECONDS = 5;
+
+    private final LocationRepository locationRepository;
+    private final LocationTombstoneRepository locationTombstoneRepository;
+    private final ShardRouter shardRouter;
+    private final ChangeClock changeClock;
+    private final boolean enabled;
+    private final long refreshSeconds;
+    private final Path snapshotFile;
+    private final long snapshotIntervalSeconds;
+    private final Comparator<String> collation;
+
+    private volatile View view;
+    private volatile boolean serving;
+
+    // Guards every change of the view, the changes received while loading and the recent deletes.
+    private final Object writeLock = new Object();
+    private List<LocationChangedEvent> pendingChanges;
+    private final Map<Long, Long> recentDeletes = new HashMap<>();
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private ChangeCursor[] changeCursors;
+    private ChangeCursor[] deleteCursors;
+    private volatile LocalDateTime refreshedUpTo;
+    private volatile ScheduledExecutorService refresher;
+
+    public LocationReadStore(LocationRepository locationRepository,
+                             LocationTombstoneRepository locationTombstoneRepository,
+                             ShardRouter shardRouter,
+                             ChangeClock changeClock,
+                             @Value("${location.read-store.enabled:false}") boolean enabled,
+                             @Value("${location.read-store.refresh-seconds:30}") long refreshSeconds,
+                             @Value("${location.read-store.snapshot.path:}") String snapshotPath,
+                             @Value("${location.read-store.snapshot.interval-seconds:600}") long snapshotIntervalSeconds,
+                             @Value("${location.read-store.collation:en-US}") String collation) {
+        this.locationRepository = locationRepository;
+        this.locationTombstoneRepository = locationTombstoneRepository;
+        this.shardRouter = shardRouter;
+        this.changeClock = changeClock;
+        this.enabled = enabled;
+        this.refreshSeconds = refreshSeconds;
+        this.snapshotFile = snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        this.collation = LocationColumns.collation(collation);
+    }
+
+    /**
+     * @return true once the store is loaded and can answer reads
+     */
+    public boolean isServing() {
+        return serving;
+    }
+
+    /**
+     * @return true if pages in this order can be served from the store
+     */
+    public boolean supports(Sort sort) {
+        for (Sort.Order order : sort) {
+            if (!LocationRepositoryCustom.PROJECTABLE_FIELDS.contains(order.getProperty())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Optional<LocationDto> findById(long locationId) {
+        if (!serving) {
+            return Optional.empty();
+        }
+        View current = view;
+        LocationDto changed = current.overlay.get(locationId);
+        if (changed != null) {
+            return Optional.of(changed);
+        }
+        int row = current.base.indexOf(locationId);
+        if (row < 0 || current.deleted.containsKey(locationId)) {
+            return Optional.empty();
+        }
+        return Optional.of(current.base.toDto(row));
+    }
+
+    /**
+     * @param pageable a sorted page request; see {@link #supports(Sort)}
+     */
+    public Page<LocationDto> findAll(Pageable pageable) {
+        if (!serving) {
+            throw new IllegalStateException("The location read store is not loaded");
+        }
+        View current = view;
+        Sort sort = pageable.getSort();
+        LocationColumns base = current.base;
+        int[] baseOrder = base.order(sort);
+        List<LocationDto> changed = current.sortedOverlay(sort, this::dtoComparator);
+
+        // Merge the base rows that are still current with the changed locations.
+        long skip = pageable.getOffset();
+        List<LocationDto> content = new ArrayList<>(pageable.getPageSize());
+        int b = 0;
+        int c = 0;
+        while (content.size() < pageable.getPageSize()) {
+            while (b < baseOrder.length && current.isReplaced(base.id(baseOrder[b]))) {
+                b++;
+            }
+            if (b >= baseOrder.length && c >= changed.size()) {
+                break;
+            }
+            boolean takeBase = c >= changed.size()
+                    || (b < baseOrder.length && compare(base, baseOrder[b], changed.get(c), sort) <= 0);
+            if (skip > 0) {
+                skip--;
+                if (takeBase) {
+                    b++;
+                } else {
+                    c++;
+                }
+            } else if (takeBase) {
+                content.add(base.toDto(baseOrder[b++]));
+            } else {
+                content.add(changed.get(c++));
+            }
+        }
+        return new PageImpl<>(content, pageable, current.count);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        if (!enabled) {
+            return;
+        }
+        Thread loader = new Thread(this::load, "location-read-store-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = refresher;
+            refresher = null;
+        }
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        executor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        // The freshest possible snapshot for the instance that replaces this one.
+        writeSnapshot();
+    }
+
+    void load() {
+        synchronized (writeLock) {
+            pendingChanges = new ArrayList<>();
+        }
+        try {
+            long started = System.nanoTime();
+            LocalDateTime loadStart = changeClock.now();
+
+            LocationColumns base;
+            LocalDateTime catchUpFrom;
+            LocationSnapshotFile.Snapshot snapshot = readSnapshot();
+            if (snapshot != null) {
+                base = snapshot.columns();
+                catchUpFrom = snapshot.highWaterMark();
+            } else {
+                LocationColumns.Builder builder = new LocationColumns.Builder(LOAD_BATCH_SIZE, collation);
+                for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                    ShardContext.run(shard, () -> scanLocations(builder));
+                }
+                base = builder.build();
+                // The scan is not a snapshot: replay everything that may have changed while it ran.
+                catchUpFrom = loadStart.minus(changeClock.settleWindow());
+            }
+
+            synchronized (writeLock) {
+                view = new View(base, PersistentLongMap.empty(), PersistentLongMap.empty(), base.size);
+                apply(pendingChanges);
+                pendingChanges = null;
+            }
+
+            ChangeCursor start = new ChangeCursor(catchUpFrom, 0);
+            changeCursors = new ChangeCursor[shardRouter.shardCount()];
+            deleteCursors = new ChangeCursor[shardRouter.shardCount()];
+            Arrays.fill(changeCursors, start);
+            Arrays.fill(deleteCursors, start);
+            int caughtUp = catchUp();
+
+            serving = true;
+            logger.info("load: Location read store ready with {} locations and {} distinct strings in {} ms, "
+                            + "{} changes applied after the {}",
+                    view.count, base.dictionary.length, (System.nanoTime() - started) / 1_000_000, caughtUp,
+                    snapshot != null ? "snapshot" : "scan");
+            scheduleRefresh();
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                pendingChanges = null;
+            }
+            logger.error("load: Could not load the location read store, reads will use the database", e);
+        }
+    }
+
+    private void scanLocations(LocationColumns.Builder builder) {
+        long afterId = 0;
+        List<Location> locations;
+        do {
+            locations = locationRepository.findAfter(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            for (Location location : locations) {
+                builder.add(LocationMapper.mapToLocationDto(location));
+            }
+            if (!locations.isEmpty()) {
+                afterId = locations.get(locations.size() - 1).getId();
+            }
+        } while (locations.size() == LOAD_BATCH_SIZE);
+    }
+
+    private LocationSnapshotFile.Snapshot readSnapshot() {
+        if (snapshotFile == null || !Files.exists(snapshotFile)) {
+            return null;
+        }
+        try {
+            long started = System.nanoTime();
+            LocationSnapshotFile.Snapshot snapshot = LocationSnapshotFile.read(snapshotFile);
+            if (!snapshot.columns().isDictionarySorted(collation)) {
+                logger.warn("readSnapshot: Ignoring snapshot {} written in another collation, loading locations from the database",
+                        snapshotFile);
+                return null;
+            }
+            logger.info("readSnapshot: Read {} locations written at {} from {} in {} ms", snapshot.columns().size,
+                    snapshot.writtenAt(), snapshotFile, (System.nanoTime() - started) / 1_000_000);
+            return snapshot;
+        } catch (IOException e) {
+            logger.warn("readSnapshot: Ignoring snapshot {}, loading locations from the database", snapshotFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the current contents of the store to the snapshot file. Runs on the refresh thread,
+     * or once that has stopped, so the high-water mark does not move while the view is taken.
+     */
+    void writeSnapshot() {
+        if (snapshotFile == null || !serving) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            // Read the mark first: the view taken after it holds at least every change up to it.
+            LocalDateTime highWaterMark = refreshedUpTo;
+            View current = view;
+            LocationColumns columns = current.overlay.isEmpty() && current.deleted.isEmpty() ? current.base : merge(current);
+            LocationSnapshotFile.write(snapshotFile, columns, highWaterMark);
+            logger.info("writeSnapshot: Wrote {} locations up to {} to {} in {} ms",
+                    columns.size, highWaterMark, snapshotFile, (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("writeSnapshot: Could not write the location snapshot {}", snapshotFile, e);
+        }
+    }
+
+    private synchronized void scheduleRefresh() {
+        if (refresher != null) {
+            return;
+        }
+        // Also runs the compactions triggered by local writes.
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "location-read-store-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (refreshSeconds > 0) {
+            refresher.scheduleWithFixedDelay(this::refresh, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+        if (snapshotFile != null && snapshotIntervalSeconds > 0) {
+            refresher.scheduleWithFixedDelay(this::writeSnapshot, snapshotIntervalSeconds, snapshotIntervalSeconds,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Applies the changes committed through any instance since the last refresh.
+     */
+    void refresh() {
+        try {
+            int applied = catchUp();
+            if (applied > 0) {
+                logger.debug("refresh: Applied {} location changes to the read store", applied);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("refresh: Could not refresh the location read store, retrying in {} s", refreshSeconds, e);
+        }
+    }
+
+    private int catchUp() {
+        int applied = 0;
+        LocalDateTime refreshed = null;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            int current = shard;
+            // Each shard is read up to where its own clock says every change has committed.
+            LocalDateTime upTo = ShardContext.call(shard, changeClock::settledUpTo);
+            applied += ShardContext.call(shard, () -> catchUpShard(current, upTo));
+            refreshed = refreshed == null || upTo.isBefore(refreshed) ? upTo : refreshed;
+        }
+        refreshedUpTo = refreshed;
+        pruneRecentDeletes();
+        compact();
+        return applied;
+    }
+
+    private int catchUpShard(int shard, LocalDateTime upTo) {
+        int applied = 0;
+        List<Location> changed;
+        do {
+            ChangeCursor cursor = changeCursors[shard];
+            changed = locationRepository.findChangedSince(cursor.changedAt(), cursor.id(), upTo,
+                    PageRequest.of(0, REFRESH_BATCH_SIZE));
+            List<LocationChangedEvent> changes = new ArrayList<>(changed.size());
+            for (Location location : changed) {
+                changes.add(LocationChangedEvent.updated(LocationMapper.mapToLocationDto(location)));
+            }
+            apply(changes);
+            if (!changed.isEmpty()) {
+                Location last = changed.get(changed.size() - 1);
+                changeCursors[shard] = new ChangeCursor(last.getUpdatedAt(), last.getId());
+            }
+            applied += changed.size();
+            compact();
+        } while (changed.size() == REFRESH_BATCH_SIZE);
+
+        List<LocationTombstone> deleted;
+        do {
+            ChangeCursor cursor = deleteCursors[shard];
+            deleted = locationTombstoneRepository.findDeletedSince(cursor.changedAt(), cursor.id(), upTo,
+                    PageRequest.of(0, REFRESH_BATCH_SIZE));
+            List<LocationChangedEvent> deletions = new ArrayList<>(deleted.size());
+            for (LocationTombstone tombstone : deleted) {
+                deletions.add(LocationChangedEvent.deleted(tombstone.getLocationId()));
+            }
+            apply(deletions);
+            if (!deleted.isEmpty()) {
+                LocationTombstone last = deleted.get(deleted.size() - 1);
+                deleteCursors[shard] = new ChangeCursor(last.getDeletedAt(), last.getLocationId());
+            }
+            applied += deleted.size();
+        } while (deleted.size() == REFRESH_BATCH_SIZE);
+        return applied;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onLocationCommitted(LocationChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        apply(List.of(event));
+        View current = view;
+        ScheduledExecutorService executor = refresher;
+        if (current != null && current.changes() >= COMPACTION_THRESHOLD && !compacting.get() && executor != null) {
+            executor.execute(this::compact);
+        }
+    }
+
+    /**
+     * Applies the changes in order and publishes the result as one new view.
+     */
+    void apply(List<LocationChangedEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            View current = view;
+            if (current == null) {
+                if (pendingChanges != null) {
+                    pendingChanges.addAll(events);
+                }
+                return;
+            }
+            LocationColumns base = current.base;
+            PersistentLongMap<LocationDto> overlay = current.overlay;
+            PersistentLongMap<Boolean> deleted = current.deleted;
+            long count = current.count;
+            for (LocationChangedEvent event : events) {
+                long id = event.locationId();
+                int row = base.indexOf(id);
+                LocationDto changed = overlay.get(id);
+                boolean present = changed != null || (row >= 0 && !deleted.containsKey(id));
+
+                if (event.type() == LocationChangedEvent.Type.DELETED) {
+                    recentDeletes.put(id, System.nanoTime());
+                    if (present) {
+                        overlay = overlay.remove(id);
+                        if (row >= 0) {
+                            deleted = deleted.put(id, Boolean.TRUE);
+                        }
+                        count--;
+                    }
+                    continue;
+                }
+
+                if (recentDeletes.containsKey(id) || deleted.containsKey(id)) {
+                    continue;
+                }
+                Long heldVersion = changed != null ? changed.getVersion() : present ? base.version(row) : null;
+                Long version = event.location().getVersion();
+                if (heldVersion != null && version != null && version <= heldVersion) {
+                    continue;
+                }
+                overlay = overlay.put(id, event.location());
+                if (!present) {
+                    count++;
+                }
+            }
+            view = new View(base, overlay, deleted, count);
+        }
+    }
+
+    /**
+     * @return the changed and deleted locations not yet folded into the base
+     */
+    int uncompactedChanges() {
+        View current = view;
+        return current == null ? 0 : current.changes();
+    }
+
+    private void pruneRecentDeletes() {
+        long oldest = System.nanoTime() - DELETE_RETENTION.toNanos();
+        synchronized (writeLock) {
+            recentDeletes.values().removeIf(deletedAt -> deletedAt - oldest < 0);
+        }
+    }
+
+    /**
+     * Folds the overlay and the deletions into a new base. Runs outside the write lock; changes
+     * applied meanwhile are carried over to the new view.
+     */
+    void compact() {
+        View before = view;
+        if (before == null || before.changes() < COMPACTION_THRESHOLD || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            LocationColumns base = merge(before);
+            for (Sort sort : before.base.cachedSorts()) {
+                base.order(sort);
+            }
+            synchronized (writeLock) {
+                View after = view;
+                PersistentLongMap<LocationDto> overlay = PersistentLongMap.empty();
+                for (long id : after.overlay.keys()) {
+                    LocationDto location = after.overlay.get(id);
+                    if (before.overlay.get(id) != location) {
+                        overlay = overlay.put(id, location);
+                    }
+                }
+                PersistentLongMap<Boolean> deleted = PersistentLongMap.empty();
+                for (long id : after.deleted.keys()) {
+                    if (!before.deleted.containsKey(id)) {
+                        deleted = deleted.put(id, Boolean.TRUE);
+                    }
+                }
+                for (long id : before.overlay.keys()) {
+                    if (!after.overlay.containsKey(id)) {
+                        // Deleted since the merge started, but part of the new base.
+                        deleted = deleted.put(id, Boolean.TRUE);
+                    }
+                }
+                view = new View(base, overlay, deleted, after.count);
+            }
+            logger.debug("compact: Read store base rebuilt with {} locations", base.size);
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    private LocationColumns merge(View view) {
+        LocationColumns base = view.base;
+        List<LocationDto> changed = view.overlay.values();
+        changed.sort(Comparator.comparing(LocationDto::getId));
+
+        LocationColumns.Builder builder = new LocationColumns.Builder((int) view.count, collation);
+        int c = 0;
+        for (int row = 0; row < base.size; row++) {
+            long id = base.id(row);
+            while (c < changed.size() && changed.get(c).getId() < id) {
+                builder.add(changed.get(c++));
+            }
+            if (c < changed.size() && changed.get(c).getId() == id) {
+                builder.add(changed.get(c++));
+            } else if (!view.deleted.containsKey(id)) {
+                builder.add(base, row);
+            }
+        }
+        while (c < changed.size()) {
+            builder.add(changed.get(c++));
+        }
+        return builder.build();
+    }
+
+    private int compare(LocationColumns base, int row, LocationDto location, Sort sort) {
+        for (Sort.Order order : sort) {
+            int result = compareValues(base.value(row, order.getProperty()),
+                    LocationMapper.getProperty(location, order.getProperty()));
+            if (result != 0) {
+                return order.isAscending() ? result : -result;
+            }
+        }
+        return Long.compare(base.id(row), location.getId());
+    }
+
+    private Comparator<LocationDto> dtoComparator(Sort sort) {
+        Comparator<LocationDto> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<LocationDto> column = (a, b) -> compareValues(
+                    LocationMapper.getProperty(a, order.getProperty()), LocationMapper.getProperty(b, order.getProperty()));
+            comparator = comparator.thenComparing(order.isAscending() ? column : column.reversed());
+        }
+        return comparator.thenComparing(LocationDto::getId);
+    }
+
+    // Nulls last, as PostgreSQL sorts them in ascending order.
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : a == null ? 1 : -1;
+        }
+        if (a instanceof String first && b instanceof String second) {
+            return collation.compare(first, second);
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+
+    /**
+     * One immutable state of the store. Like the orders of the base, the overlay sorted for a given
+     * sort is computed on first use and the most recently used ones are kept, so pages of a
+     * view that sees no writes in between do not sort the overlay again.
+     */
+    private static final class View {
+        final LocationColumns base;
+        // Locations created or changed since the base was built.
+        final PersistentLongMap<LocationDto> overlay;
+        // Base ids deleted since the base was built.
+        final PersistentLongMap<Boolean> deleted;
+        final long count;
+
+        // Least recently used first; guarded by itself.
+        private final Map<Sort, List<LocationDto>> sortedOverlays = new LinkedHashMap<>(MAX_CACHED_OVERLAYS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Sort, List<LocationDto>> eldest) {
+                return size() > MAX_CACHED_OVERLAYS;
+            }
+        };
+
+        View(LocationColumns base, PersistentLongMap<LocationDto> overlay, PersistentLongMap<Boolean> deleted, long count) {
+            this.base = base;
+            this.overlay = overlay;
+            this.deleted = deleted;
+            this.count = count;
+        }
+
+        List<LocationDto> sortedOverlay(Sort sort, Function<Sort, Comparator<LocationDto>> comparator) {
+            synchronized (sortedOverlays) {
+                List<LocationDto> cached = sortedOverlays.get(sort);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            List<LocationDto> changed = overlay.values();
+            changed.sort(comparator.apply(sort));
+            List<LocationDto> sorted = Collections.unmodifiableList(changed);
+
+            synchronized (sortedOverlays) {
+                sortedOverlays.put(sort, sorted);
+            }
+            return sorted;
+        }
+
+        boolean isReplaced(long baseId) {
+            return overlay.containsKey(baseId) || deleted.containsKey(baseId);
+        }
+
+        /**
+         * @return the rows a compaction would fold into the base: deletions count as much as changes
+         */
+        int changes() {
+            return overlay.size() + deleted.size();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.challenge.locationmanagement.readstore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary file holding a {@link LocationColumns} and the point up to which it includes every change.
+ *
+ * Layout, big-endian: a 64-byte header, the long columns (ids, created at, updated at, versions),
+ * the int columns (name, neighborhood, city and state codes), the dictionary as length-prefixed
+ * UTF-8 strings, the external references as length-prefixed UTF-8 strings with a length of -1
+ * for none, and a CRC32C of everything before it. Reading maps the file and copies each column
+ * out in bulk; only the external references are parsed row by row. Files of format 1, written
+ * before external references were included, are rejected: restoring them would lose the
+ * references. A file is written under a temporary name and renamed
+ * into place, so readers never see a partial snapshot. The dictionary is stored in the collation
+ * of the writer, which the reader has to check against its own.
+ */
+final class LocationSnapshotFile {
+
+    // "LOCSNAP" followed by a zero byte.
+    private static final long MAGIC = 0x4C4F43534E415000L;
+    private static final int FORMAT_VERSION = 2;
+    private static final int NO_EXTERNAL_REF = -1;
+    private static final int HEADER_BYTES = 64;
+    private static final int CHECKSUM_BYTES = 8;
+    private static final int ROW_BYTES = 4 * Long.BYTES + 4 * Integer.BYTES;
+    private static final int WRITE_BUFFER_BYTES = 256 * 1024;
+
+    private LocationSnapshotFile() {
+    }
+
+    /**
+     * @param highWaterMark every change up to this time is included in the columns
+     */
+    static void write(Path file, LocationColumns columns, LocalDateTime highWaterMark) throws IOException {
+        byte[][] dictionary = new byte[columns.dictionary.length][];
+        long dictionaryBytes = 0;
+        for (int code = 0; code < dictionary.length; code++) {
+            dictionary[code] = columns.dictionary[code].getBytes(StandardCharsets.UTF_8);
+            dictionaryBytes += Integer.BYTES + dictionary[code].length;
+        }
+        byte[][] externalRefs = new byte[columns.size][];
+        long externalRefBytes = 0;
+        for (int row = 0; row < columns.size; row++) {
+            String externalRef = columns.externalRefs[row];
+            externalRefs[row] = externalRef == null ? null : externalRef.getBytes(StandardCharsets.UTF_8);
+            externalRefBytes += Integer.BYTES + (externalRef == null ? 0 : externalRefs[row].length);
+        }
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32C checksum = new CRC32C();
+            // Not closed: closing the stream would close the channel before the checksum is written.
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), checksum), WRITE_BUFFER_BYTES));
+
+            out.writeLong(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(columns.size);
+            out.writeInt(dictionary.length);
+            out.writeInt(0);
+            out.writeLong(LocationColumns.toMicros(highWaterMark));
+            out.writeLong(LocationColumns.toMicros(LocalDateTime.now(ZoneOffset.UTC)));
+            out.writeLong(dictionaryBytes);
+            out.writeLong(externalRefBytes);
+            out.write(new byte[HEADER_BYTES - out.size()]);
+
+            writeLongs(out, columns.ids, columns.size);
+            writeLongs(out, columns.createdAt, columns.size);
+            writeLongs(out, columns.updatedAt, columns.size);
+            writeLongs(out, columns.versions, columns.size);
+            writeInts(out, columns.names, columns.size);
+            writeInts(out, columns.neighborhoods, columns.size);
+            writeInts(out, columns.cities, columns.size);
+            writeInts(out, columns.states, columns.size);
+            for (byte[] value : dictionary) {
+                out.writeInt(value.length);
+                out.write(value);
+            }
+            for (byte[] value : externalRefs) {
+                if (value == null) {
+                    out.writeInt(NO_EXTERNAL_REF);
+                } else {
+                    out.writeInt(value.length);
+                    out.write(value);
+                }
+            }
+            out.flush();
+
+            ByteBuffer trailer = ByteBuffer.allocate(CHECKSUM_BYTES).putLong(0, checksum.getValue());
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @throws IOException if the file cannot be read, is not a snapshot of this format or fails its checksum
+     */
+    static Snapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES + CHECKSUM_BYTES) {
+                throw new IOException("Snapshot " + file + " is truncated: " + fileSize + " bytes");
+            }
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is too large to map: " + fileSize + " bytes");
+            }
+            int size = (int) fileSize;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getLong(0) != MAGIC) {
+                throw new IOException(file + " is not a location snapshot");
+            }
+            int format = buffer.getInt(8);
+            if (format == 1) {
+                throw new IOException("Snapshot " + file + " was written before external references were included "
+                        + "and cannot be used without losing them");
+            }
+            if (format != FORMAT_VERSION) {
+                throw new IOException("Snapshot " + file + " has unsupported format version " + format);
+            }
+            CRC32C checksum = new CRC32C();
+            checksum.update(buffer.slice(0, size - CHECKSUM_BYTES));
+            if (checksum.getValue() != buffer.getLong(size - CHECKSUM_BYTES)) {
+                throw new IOException("Snapshot " + file + " is corrupt: checksum mismatch");
+            }
+
+            int rows = buffer.getInt(12);
+            int dictionarySize = buffer.getInt(16);
+            long highWaterMark = buffer.getLong(24);
+            long writtenAt = buffer.getLong(32);
+            long dictionaryBytes = buffer.getLong(40);
+            long externalRefBytes = buffer.getLong(48);
+            if (rows < 0 || dictionarySize < 0 || dictionaryBytes < 0 || externalRefBytes < 0
+                    || HEADER_BYTES + (long) rows * ROW_BYTES + dictionaryBytes + externalRefBytes + CHECKSUM_BYTES != fileSize) {
+                throw new IOException("Snapshot " + file + " is corrupt: section sizes do not match the file size");
+            }
+
+            int position = HEADER_BYTES;
+            long[] ids = new long[rows];
+            long[] createdAt = new long[rows];
+            long[] updatedAt = new long[rows];
+            long[] versions = new long[rows];
+            for (long[] column : new long[][]{ids, createdAt, updatedAt, versions}) {
+                buffer.slice(position, rows * Long.BYTES).asLongBuffer().get(column);
+                position += rows * Long.BYTES;
+            }
+            int[] names = new int[rows];
+            int[] neighborhoods = new int[rows];
+            int[] cities = new int[rows];
+            int[] states = new int[rows];
+            for (int[] column : new int[][]{names, neighborhoods, cities, states}) {
+                buffer.slice(position, rows * Integer.BYTES).asIntBuffer().get(column);
+                position += rows * Integer.BYTES;
+            }
+
+            ByteBuffer strings = buffer.slice(position, (int) dictionaryBytes);
+            String[] dictionary = new String[dictionarySize];
+            for (int code = 0; code < dictionarySize; code++) {
+                byte[] value = new byte[strings.getInt()];
+                strings.get(value);
+                dictionary[code] = new String(value, StandardCharsets.UTF_8);
+            }
+            position += (int) dictionaryBytes;
+
+            ByteBuffer refs = buffer.slice(position, (int) externalRefBytes);
+            String[] externalRefs = new String[rows];
+            for (int row = 0; row < rows; row++) {
+                int length = refs.getInt();
+                if (length != NO_EXTERNAL_REF) {
+                    byte[] value = new byte[length];
+                    refs.get(value);
+                    externalRefs[row] = new String(value, StandardCharsets.UTF_8);
+                }
+            }
+
+            LocationColumns columns = new LocationColumns(rows, ids, names, neighborhoods, cities, states,
+                    createdAt, updatedAt, versions, externalRefs, dictionary);
+            return new Snapshot(columns, LocationColumns.toDateTime(highWaterMark), LocationColumns.toDateTime(writtenAt));
+        } catch (IndexOutOfBoundsException | BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException("Snapshot " + file + " is corrupt", e);
+        }
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] column, int size) throws IOException {
+        for (int i = 0; i < size; i++) {
+            out.writeLong(column[i]);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] column, int size) throws IOException {
+        for (int i = 0; i < size; i++) {
+            out.writeInt(column[i]);
+        }
+    }
+
+    /**
+     * @param highWaterMark every change up to this time is included in the columns
+     */
+    record Snapshot(LocationColumns columns, LocalDateTime highWaterMark, LocalDateTime writtenAt) {
+    }
+}
@@ -0,0 +1,117 @@
+package org.challenge.locationmanagement.readstore;
+
+import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.entity.Location;
+import org.challenge.locationmanagement.repository.LocationRepository;
+import org.challenge.locationmanagement.sharding.ShardContext;
+import org.challenge.locationmanagement.sharding.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One-off command that writes the locations of a snapshot file back to the database. It runs
+ * when location.read-store.snapshot.restore names the file, started through
+ * {@link org.challenge.locationmanagement.LocationSnapshotRestoreApplication}, which runs without
+ * the web server and exits with {@link #getExitCode()}.
+ *
+ * The checksum is verified before anything is written. Locations keep their ids, creation times,
+ * external references and versions and are stamped as updated at the restore, so the change feed
+ * reports them. Ids that already exist are left untouched, so an interrupted restore can simply be
+ * run again, ids deleted since the snapshot stay deleted, and a location whose external reference
+ * has been upserted again under another id since is not restored.
+ */
+@Component
+@ConditionalOnProperty("location.read-store.snapshot.restore")
+public class LocationSnapshotRestorer implements ApplicationRunner, ExitCodeGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationSnapshotRestorer.class);
+
+    private static final int RESTORE_BATCH_SIZE = 1_000;
+
+    private final LocationRepository locationRepository;
+    private final ShardRouter shardRouter;
+    private final ApplicationContext context;
+    private final Path snapshotFile;
+    private volatile boolean restored;
+
+    public LocationSnapshotRestorer(LocationRepository locationRepository,
+                                    ShardRouter shardRouter,
+                                    ApplicationContext context,
+                                    @Value("${location.read-store.snapshot.restore}") String snapshotFile) {
+        this.locationRepository = locationRepository;
+        this.shardRouter = shardRouter;
+        this.context = context;
+        this.snapshotFile = Path.of(snapshotFile);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (context instanceof WebServerApplicationContext) {
+            throw new IllegalStateException("The snapshot restore must not run while the application serves requests: "
+                    + "start it through LocationSnapshotRestoreApplication");
+        }
+        LocationSnapshotFile.Snapshot snapshot = LocationSnapshotFile.read(snapshotFile);
+        LocationColumns columns = snapshot.columns();
+        logger.info("run: Restoring {} locations from {}, written at {}", columns.size, snapshotFile, snapshot.writtenAt());
+
+        long inserted = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            inserted += restoreShard(columns, shard);
+        }
+
+        logger.info("run: Restored {} locations, {} were already present, deleted since or had their external reference taken",
+                inserted, columns.size - inserted);
+        restored = true;
+    }
+
+    @Override
+    public int getExitCode() {
+        return restored ? 0 : 1;
+    }
+
+    private long restoreShard(LocationColumns columns, int shard) {
+        long inserted = 0;
+        List<Location> batch = new ArrayList<>(RESTORE_BATCH_SIZE);
+        for (int row = 0; row < columns.size; row++) {
+            if (shardRouter.shardForId(columns.id(row)) != shard) {
+                continue;
+            }
+            batch.add(toLocation(columns.toDto(row)));
+            if (batch.size() == RESTORE_BATCH_SIZE) {
+                inserted += restoreBatch(shard, batch);
+                batch = new ArrayList<>(RESTORE_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            inserted += restoreBatch(shard, batch);
+        }
+        return inserted;
+    }
+
+    private int restoreBatch(int shard, List<Location> batch) {
+        return ShardContext.call(shard, () -> locationRepository.restoreAll(batch));
+    }
+
+    private static Location toLocation(LocationDto locationDto) {
+        Location location = new Location(locationDto.getName(), locationDto.getNeighborhood(),
+                locationDto.getCity(), locationDto.getState());
+        location.setId(locationDto.getId());
+        location.setExternalRef(locationDto.getExternalRef());
+        location.setCreatedAt(locationDto.getCreatedAt());
+        location.setVersion(locationDto.getVersion());
+        return location;
+    }
+}
@@ -0,0 +1,204 @@
+package org.challenge.locationmanagement.readstore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable map from long keys to values whose versions share structure: put and remove copy
+ * only the path from the root to the key, at most eleven nodes of up to 64 slots, so a new
+ * version costs the same whatever the size of the map.
+ *
+ * A hash array mapped trie indexed six bits at a time by a bijective mix of the key, so two keys
+ * never share a full hash and no collision nodes are needed.
+ */
+final class PersistentLongMap<V> {
+
+    private static final int BITS = 6;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentLongMap<?> EMPTY = new PersistentLongMap<>(Node.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentLongMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PersistentLongMap<V> empty() {
+        return (PersistentLongMap<V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean containsKey(long key) {
+        return root.find(hash(key), 0, key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        Entry entry = root.find(hash(key), 0, key);
+        return entry == null ? null : (V) entry.value;
+    }
+
+    PersistentLongMap<V> put(long key, V value) {
+        Entry existing = root.find(hash(key), 0, key);
+        if (existing != null && existing.value == value) {
+            return this;
+        }
+        return new PersistentLongMap<>(root.put(hash(key), 0, new Entry(key, value)), existing == null ? size + 1 : size);
+    }
+
+    PersistentLongMap<V> remove(long key) {
+        if (!containsKey(key)) {
+            return this;
+        }
+        return size == 1 ? empty() : new PersistentLongMap<>(root.remove(hash(key), 0, key), size - 1);
+    }
+
+    /**
+     * @return the keys, in no particular order
+     */
+    long[] keys() {
+        long[] keys = new long[size];
+        List<Entry> entries = new ArrayList<>(size);
+        root.collect(entries);
+        for (int i = 0; i < size; i++) {
+            keys[i] = entries.get(i).key;
+        }
+        return keys;
+    }
+
+    /**
+     * @return the values, in no particular order
+     */
+    @SuppressWarnings("unchecked")
+    List<V> values() {
+        List<Entry> entries = new ArrayList<>(size);
+        root.collect(entries);
+        List<V> values = new ArrayList<>(size);
+        for (Entry entry : entries) {
+            values.add((V) entry.value);
+        }
+        return values;
+    }
+
+    // MurmurHash3's finalizer: every step is invertible, so distinct keys get distinct hashes.
+    private static long hash(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private record Entry(long key, Object value) {
+    }
+
+    /**
+     * Slot i of the bitmap is present when its bit is set; slots hold an {@link Entry} or a child
+     * node and are packed in bit order.
+     */
+    private static final class Node {
+
+        static final Node EMPTY = new Node(0, new Object[0]);
+
+        final long bitmap;
+        final Object[] slots;
+
+        Node(long bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        Entry find(long hash, int shift, long key) {
+            Node node = this;
+            while (true) {
+                long bit = 1L << ((hash >>> shift) & MASK);
+                if ((node.bitmap & bit) == 0) {
+                    return null;
+                }
+                Object slot = node.slots[Long.bitCount(node.bitmap & (bit - 1))];
+                if (slot instanceof Entry entry) {
+                    return entry.key == key ? entry : null;
+                }
+                node = (Node) slot;
+                shift += BITS;
+            }
+        }
+
+        Node put(long hash, int shift, Entry entry) {
+            long bit = 1L << ((hash >>> shift) & MASK);
+            int index = Long.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, copy, 0, index);
+                copy[index] = entry;
+                System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+                return new Node(bitmap | bit, copy);
+            }
+            Object slot = slots[index];
+            Object replacement;
+            if (slot instanceof Node child) {
+                replacement = child.put(hash, shift + BITS, entry);
+            } else if (((Entry) slot).key == entry.key) {
+                replacement = entry;
+            } else {
+                Entry other = (Entry) slot;
+                replacement = pair(hash(other.key), other, hash, entry, shift + BITS);
+            }
+            Object[] copy = slots.clone();
+            copy[index] = replacement;
+            return new Node(bitmap, copy);
+        }
+
+        private static Node pair(long firstHash, Entry first, long secondHash, Entry second, int shift) {
+            int firstIndex = (int) ((firstHash >>> shift) & MASK);
+            int secondIndex = (int) ((secondHash >>> shift) & MASK);
+            if (firstIndex == secondIndex) {
+                return new Node(1L << firstIndex, new Object[]{pair(firstHash, first, secondHash, second, shift + BITS)});
+            }
+            Object[] slots = firstIndex < secondIndex ? new Object[]{first, second} : new Object[]{second, first};
+            return new Node((1L << firstIndex) | (1L << secondIndex), slots);
+        }
+
+        /**
+         * Removes a key that is present. A child left with a single entry is replaced by that entry.
+         */
+        Node remove(long hash, int shift, long key) {
+            long bit = 1L << ((hash >>> shift) & MASK);
+            int index = Long.bitCount(bitmap & (bit - 1));
+            Object slot = slots[index];
+            if (slot instanceof Node child) {
+                Node remaining = child.remove(hash, shift + BITS, key);
+                Object[] copy = slots.clone();
+                copy[index] = remaining.slots.length == 1 && remaining.slots[0] instanceof Entry only ? only : remaining;
+                return new Node(bitmap, copy);
+            }
+            Object[] copy = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            System.arraycopy(slots, index + 1, copy, index, slots.length - index - 1);
+            return new Node(bitmap & ~bit, copy);
+        }
+
+        void collect(List<Entry> entries) {
+            for (Object slot : slots) {
+                if (slot instanceof Entry entry) {
+                    entries.add(entry);
+                } else {
+                    ((Node) slot).collect(entries);
+                }
+            }
+        }
+    }
+}
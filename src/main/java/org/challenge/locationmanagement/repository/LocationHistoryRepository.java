@@ -0,0 +1,14 @@
+package org.challenge.locationmanagement.repository;
+
+import org.challenge.locationmanagement.entity.LocationHistory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+
+@Repository
+public interface LocationHistoryRepository extends JpaRepository<LocationHistory, Long> {
+
+    Page<LocationHistory> findByLocationId(Long locationId, Pageable pageable);
+}
@@ -1,10 +1,101 @@
 package org.challenge.locationmanagement.repository;
 
+import org.challenge.locationmanagement.entity.CurrentUtcTimestamp;
 import org.challenge.locationmanagement.entity.Location;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 
 @Repository
-public interface LocationRepository extends JpaRepository<Location, Long> {
+public interface LocationRepository extends JpaRepository<Location, Long>, LocationRepositoryCustom {
+
+    /**
+     * Keyset scan over the (updated_at, id) index: returns the locations changed strictly
+     * after the (since, afterId) position and no later than upTo.
+     */
+    @Query("select l from Location l " +
+            "where l.updatedAt <= :upTo " +
+            "and (l.updatedAt > :since or (l.updatedAt = :since and l.id > :afterId)) " +
+            "order by l.updatedAt asc, l.id asc")
+    List<Location> findChangedSince(@Param("since") LocalDateTime since,
+                                    @Param("afterId") Long afterId,
+                                    @Param("upTo") LocalDateTime upTo,
+                                    Pageable limit);
+
+    /**
+     * Overwrites the location's fields, stamps it with the database clock and bumps its version in
+     * a single statement.
+     *
+     * @return the number of rows updated: 0 if the location does not exist
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE locations SET name = :name, neighborhood = :neighborhood, city = :city, state = :state, " +
+            "updated_at = " + CurrentUtcTimestamp.SQL + ", version = version + 1 " +
+            "WHERE id = :id", nativeQuery = true)
+    int updateLocation(@Param("id") Long id,
+                       @Param("name") String name,
+                       @Param("neighborhood") String neighborhood,
+                       @Param("city") String city,
+                       @Param("state") String state);
+
+    /**
+     * Same as {@link #updateLocation} but only if the stored version still equals expectedVersion.
+     *
+     * @return the number of rows updated: 0 if the location does not exist or its version differs
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE locations SET name = :name, neighborhood = :neighborhood, city = :city, state = :state, " +
+            "updated_at = " + CurrentUtcTimestamp.SQL + ", version = version + 1 " +
+            "WHERE id = :id AND version = :expectedVersion", nativeQuery = true)
+    int updateLocationIfVersion(@Param("id") Long id,
+                                @Param("expectedVersion") Long expectedVersion,
+                                @Param("name") String name,
+                                @Param("neighborhood") String neighborhood,
+                                @Param("city") String city,
+                                @Param("state") String state);
+
+    /**
+     * Hands an external reference over to a location that has none, keeping its own values, if
+     * the stored version still equals expectedVersion and no other location holds the reference
+     * with the same city and state.
+     *
+     * @return the number of rows updated: 0 if the location does not exist, its version differs, it has a reference
+     *         or the reference is taken for its city and state
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE locations SET external_ref = :externalRef, " +
+            "updated_at = " + CurrentUtcTimestamp.SQL + ", version = version + 1 " +
+            "WHERE id = :id AND version = :expectedVersion AND external_ref IS NULL " +
+            "AND NOT EXISTS (SELECT 1 FROM locations taken WHERE taken.external_ref = :externalRef " +
+            "AND taken.city = locations.city AND taken.state = locations.state)", nativeQuery = true)
+    int adoptExternalRef(@Param("id") Long id,
+                         @Param("expectedVersion") Long expectedVersion,
+                         @Param("externalRef") String externalRef);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Location l where l.id = :id")
+    int deleteLocation(@Param("id") Long id);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Location l where l.id = :id and l.version = :expectedVersion")
+    int deleteLocationIfVersion(@Param("id") Long id, @Param("expectedVersion") Long expectedVersion);
+
+    @Query("select l.id from Location l where l.id > :afterId order by l.id asc")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable limit);
+
+    /**
+     * Walks the primary key down from the largest id, so it stops at the first location old enough.
+     */
+    @Query("select l.id from Location l where l.createdAt <= :createdUpTo order by l.id desc")
+    List<Long> findIdsCreatedUpTo(@Param("createdUpTo") LocalDateTime createdUpTo, Pageable limit);
+
+    @Query("select l from Location l where l.id > :afterId order by l.id asc")
+    List<Location> findAfter(@Param("afterId") Long afterId, Pageable limit);
 }
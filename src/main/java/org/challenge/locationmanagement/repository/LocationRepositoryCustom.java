@@ -0,0 +1,94 @@
+package org.challenge.locationmanagement.repository;
+
+import org.challenge.locationmanagement.entity.Location;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Queries of {@link LocationRepository} that are written in SQL rather than derived by Spring Data.
+ */
+public interface LocationRepositoryCustom {
+
+    /**
+     * Location properties that can be selected by the projection queries, in response order.
+     */
+    List<String> PROJECTABLE_FIELDS = List.of("id", "name", "neighborhood", "city", "state", "createdAt", "updatedAt", "version");
+
+    /**
+     * Start time of the current transaction by the database clock, in UTC at microsecond
+     * precision. Outside a transaction, the time of the query. Writes stamp rows with the same
+     * time inside their own statements, see {@link org.challenge.locationmanagement.entity.CurrentUtcTimestamp}.
+     */
+    LocalDateTime currentTimestamp();
+
+    /**
+     * Inserts the given locations, or updates the existing ones with the same external reference,
+     * city and state, in batched INSERT ... ON CONFLICT DO UPDATE statements. Existing rows whose
+     * values would not change are left untouched and are not returned.
+     *
+     * @return the rows that were inserted or updated, with their state after the write
+     */
+    List<UpsertedLocation> upsertAll(List<Location> locations);
+
+    /**
+     * Inserts the given locations in one JDBC batch and assigns their generated ids,
+     * timestamps and initial version.
+     *
+     * @return the same locations, now persisted
+     */
+    List<Location> insertAll(List<Location> locations);
+
+    /**
+     * Updates name, neighborhood, city and state of each location by id in one JDBC batch. A
+     * location whose version is set is only updated if the row is still at that version.
+     *
+     * @return the number of rows updated for each location, in order: 0 when missing or at another version
+     */
+    int[] updateAll(List<Location> locations);
+
+    /**
+     * Deletes the locations with the given ids in one JDBC batch and records a tombstone for each
+     * deleted row. A non-null expected version restricts the delete to rows still at that version.
+     *
+     * @param expectedVersions one entry per id, null for an unconditional delete
+     * @return the number of rows deleted for each id, in order
+     */
+    int[] deleteAll(List<Long> ids, List<Long> expectedVersions);
+
+    /**
+     * Inserts the given locations with their own ids, external references, creation times and
+     * versions, skipping ids that already exist or were deleted and locations whose external
+     * reference is held by another row, and moves the id sequence past the highest id in the
+     * table. Inserted rows are stamped as updated now, so the change feed reports them.
+     *
+     * @return the number of locations inserted
+     */
+    int restoreAll(List<Location> locations);
+
+    /**
+     * Reads the current rows straight from the database, bypassing the persistence context.
+     */
+    List<Location> findAllCurrent(Collection<Long> ids);
+
+    /**
+     * Reads a page of locations selecting only the given properties.
+     *
+     * @param fields properties from {@link #PROJECTABLE_FIELDS}; the sort may only use these properties too
+     * @return one map per location, from property name to value, in the order of fields
+     */
+    Page<Map<String, Object>> findAllProjected(List<String> fields, Pageable pageable);
+
+    /**
+     * Reads one location selecting only the given properties.
+     */
+    Optional<Map<String, Object>> findProjectedById(Long id, List<String> fields);
+
+    record UpsertedLocation(Location location, boolean inserted) {
+    }
+}
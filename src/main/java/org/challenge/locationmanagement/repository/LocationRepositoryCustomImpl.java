@@ -0,0 +1,277 @@
+package org.challenge.locationmanagement.repository;
+
+import org.challenge.locationmanagement.entity.CurrentUtcTimestamp;
+import org.challenge.locationmanagement.entity.Location;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * PostgreSQL implementation of {@link LocationRepositoryCustom}.
+ */
+public class LocationRepositoryCustomImpl implements LocationRepositoryCustom {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String UPSERT_PREFIX =
+            "INSERT INTO locations (external_ref, name, neighborhood, city, state, created_at, updated_at) VALUES ";
+    private static final String UPSERT_ROW = "(?, ?, ?, ?, ?, " + CurrentUtcTimestamp.SQL + ", " + CurrentUtcTimestamp.SQL + ")";
+    // xmax is 0 only for rows inserted by this statement, which tells inserts and updates apart.
+    private static final String UPSERT_SUFFIX =
+            " ON CONFLICT (external_ref, city, state) DO UPDATE" +
+            " SET name = EXCLUDED.name, neighborhood = EXCLUDED.neighborhood, updated_at = EXCLUDED.updated_at," +
+            " version = locations.version + 1" +
+            " WHERE locations.name IS DISTINCT FROM EXCLUDED.name" +
+            " OR locations.neighborhood IS DISTINCT FROM EXCLUDED.neighborhood" +
+            " RETURNING id, external_ref, name, neighborhood, city, state, created_at, updated_at, version, (xmax = 0) AS inserted";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO locations (name, neighborhood, city, state, created_at, updated_at, version)" +
+            " VALUES (?, ?, ?, ?, " + CurrentUtcTimestamp.SQL + ", " + CurrentUtcTimestamp.SQL + ", 0)";
+    // COALESCE turns a null expected version into an unconditional update.
+    private static final String UPDATE_SQL =
+            "UPDATE locations SET name = ?, neighborhood = ?, city = ?, state = ?, updated_at = " + CurrentUtcTimestamp.SQL +
+            ", version = version + 1 WHERE id = ? AND version = COALESCE(?, version)";
+    private static final String DELETE_SQL = "DELETE FROM locations WHERE id = ? AND version = COALESCE(?, version)";
+    private static final String TOMBSTONE_SQL =
+            "INSERT INTO location_tombstones (location_id, deleted_at) VALUES (?, " + CurrentUtcTimestamp.SQL + ")" +
+            " ON CONFLICT (location_id) DO UPDATE SET deleted_at = EXCLUDED.deleted_at";
+    // A tombstone means the location was deleted after the snapshot was taken: it stays deleted.
+    private static final String RESTORE_SQL =
+            "INSERT INTO locations (id, external_ref, name, neighborhood, city, state, created_at, updated_at, version)" +
+            " SELECT ?, ?, ?, ?, ?, ?, ?, " + CurrentUtcTimestamp.SQL + ", ?" +
+            " WHERE NOT EXISTS (SELECT 1 FROM location_tombstones WHERE location_id = ?)" +
+            " ON CONFLICT DO NOTHING";
+    // Only ever moves the sequence forward, so ids handed out before the restore are not reused.
+    private static final String ADVANCE_IDENTITY_SQL =
+            "SELECT setval(t.sequence, t.max_id) FROM (" +
+            " SELECT pg_get_serial_sequence('locations', 'id')::regclass AS sequence, (SELECT max(id) FROM locations) AS max_id) t" +
+            " WHERE t.max_id > COALESCE(pg_sequence_last_value(t.sequence), 0)";
+    // The transaction start time in PostgreSQL, with its offset so it converts to UTC whatever the session time zone.
+    private static final String CURRENT_TIMESTAMP_SQL = "SELECT CURRENT_TIMESTAMP";
+    private static final String SELECT_SQL =
+            "SELECT id, external_ref, name, neighborhood, city, state, created_at, updated_at, version FROM locations WHERE id IN ";
+
+    private static final Map<String, String> COLUMNS = Map.of(
+            "id", "id",
+            "name", "name",
+            "neighborhood", "neighborhood",
+            "city", "city",
+            "state", "state",
+            "createdAt", "created_at",
+            "updatedAt", "updated_at",
+            "version", "version");
+
+    private static final RowMapper<Location> LOCATION_ROW_MAPPER = (rs, rowNum) -> {
+        Location location = new Location(rs.getString("name"), rs.getString("neighborhood"),
+                rs.getString("city"), rs.getString("state"));
+        location.setId(rs.getLong("id"));
+        location.setExternalRef(rs.getString("external_ref"));
+        location.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        location.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+        location.setVersion(rs.getLong("version"));
+        return location;
+    };
+
+    private static final RowMapper<UpsertedLocation> UPSERTED_ROW_MAPPER = (rs, rowNum) ->
+            new UpsertedLocation(LOCATION_ROW_MAPPER.mapRow(rs, rowNum), rs.getBoolean("inserted"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LocationRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public LocalDateTime currentTimestamp() {
+        OffsetDateTime now = jdbcTemplate.queryForObject(CURRENT_TIMESTAMP_SQL, OffsetDateTime.class);
+        return now.withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    @Override
+    public List<UpsertedLocation> upsertAll(List<Location> locations) {
+        List<UpsertedLocation> written = new ArrayList<>();
+
+        for (int from = 0; from < locations.size(); from += BATCH_SIZE) {
+            List<Location> batch = locations.subList(from, Math.min(from + BATCH_SIZE, locations.size()));
+            String sql = UPSERT_PREFIX + String.join(", ", Collections.nCopies(batch.size(), UPSERT_ROW)) + UPSERT_SUFFIX;
+
+            Object[] args = new Object[batch.size() * 5];
+            int i = 0;
+            for (Location location : batch) {
+                args[i++] = location.getExternalRef();
+                args[i++] = location.getName();
+                args[i++] = location.getNeighborhood();
+                args[i++] = location.getCity();
+                args[i++] = location.getState();
+            }
+            written.addAll(jdbcTemplate.query(sql, UPSERTED_ROW_MAPPER, args));
+        }
+        return written;
+    }
+
+    @Override
+    public List<Location> insertAll(List<Location> locations) {
+        for (int from = 0; from < locations.size(); from += BATCH_SIZE) {
+            List<Location> batch = locations.subList(from, Math.min(from + BATCH_SIZE, locations.size()));
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL, new String[]{"id", "created_at"})) {
+                    for (Location location : batch) {
+                        statement.setString(1, location.getName());
+                        statement.setString(2, location.getNeighborhood());
+                        statement.setString(3, location.getCity());
+                        statement.setString(4, location.getState());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    // Generated keys come back in batch order.
+                    try (ResultSet keys = statement.getGeneratedKeys()) {
+                        for (Location location : batch) {
+                            keys.next();
+                            location.setId(keys.getLong("id"));
+                            location.setCreatedAt(keys.getTimestamp("created_at").toLocalDateTime());
+                            location.setUpdatedAt(location.getCreatedAt());
+                            location.setVersion(0L);
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        return locations;
+    }
+
+    @Override
+    public int[] updateAll(List<Location> locations) {
+        List<Object[]> args = new ArrayList<>(locations.size());
+        for (Location location : locations) {
+            args.add(new Object[]{location.getName(), location.getNeighborhood(), location.getCity(), location.getState(),
+                    location.getId(), location.getVersion()});
+        }
+        return jdbcTemplate.batchUpdate(UPDATE_SQL, args, new int[]{Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+                Types.VARCHAR, Types.BIGINT, Types.BIGINT});
+    }
+
+    @Override
+    public int[] deleteAll(List<Long> ids, List<Long> expectedVersions) {
+        List<Object[]> args = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            args.add(new Object[]{ids.get(i), expectedVersions.get(i)});
+        }
+        int[] deleted = jdbcTemplate.batchUpdate(DELETE_SQL, args, new int[]{Types.BIGINT, Types.BIGINT});
+
+        List<Object[]> tombstones = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (deleted[i] != 0) {
+                tombstones.add(new Object[]{ids.get(i)});
+            }
+        }
+        if (!tombstones.isEmpty()) {
+            jdbcTemplate.batchUpdate(TOMBSTONE_SQL, tombstones, new int[]{Types.BIGINT});
+        }
+        return deleted;
+    }
+
+    @Override
+    public int restoreAll(List<Location> locations) {
+        // A fresh updated_at puts restored rows in the change feed, which delta clients and other instances follow.
+        List<Object[]> args = new ArrayList<>(locations.size());
+        for (Location location : locations) {
+            args.add(new Object[]{location.getId(), location.getExternalRef(), location.getName(), location.getNeighborhood(),
+                    location.getCity(), location.getState(), timestamp(location.getCreatedAt()),
+                    location.getVersion() == null ? 0L : location.getVersion(), location.getId()});
+        }
+        int inserted = 0;
+        for (int count : jdbcTemplate.batchUpdate(RESTORE_SQL, args, new int[]{Types.BIGINT, Types.VARCHAR, Types.VARCHAR,
+                Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP, Types.BIGINT, Types.BIGINT})) {
+            inserted += Math.max(count, 0);
+        }
+        jdbcTemplate.queryForList(ADVANCE_IDENTITY_SQL, Long.class);
+        return inserted;
+    }
+
+    private static Timestamp timestamp(LocalDateTime dateTime) {
+        return dateTime == null ? null : Timestamp.valueOf(dateTime);
+    }
+
+    @Override
+    public List<Location> findAllCurrent(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String sql = SELECT_SQL + "(" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        return jdbcTemplate.query(sql, LOCATION_ROW_MAPPER, ids.toArray());
+    }
+
+    @Override
+    public Page<Map<String, Object>> findAllProjected(List<String> fields, Pageable pageable) {
+        StringBuilder sql = new StringBuilder(selectList(fields)).append(" FROM locations");
+        if (pageable.getSort().isSorted()) {
+            List<String> orders = new ArrayList<>();
+            for (Sort.Order order : pageable.getSort()) {
+                orders.add(column(order.getProperty()) + (order.isAscending() ? " ASC" : " DESC"));
+            }
+            sql.append(" ORDER BY ").append(String.join(", ", orders));
+        }
+        sql.append(" LIMIT ? OFFSET ?");
+
+        List<Map<String, Object>> content = jdbcTemplate.query(sql.toString(), projectedRowMapper(fields),
+                pageable.getPageSize(), pageable.getOffset());
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> jdbcTemplate.queryForObject("SELECT count(*) FROM locations", Long.class));
+    }
+
+    @Override
+    public Optional<Map<String, Object>> findProjectedById(Long id, List<String> fields) {
+        String sql = selectList(fields) + " FROM locations WHERE id = ?";
+        return jdbcTemplate.query(sql, projectedRowMapper(fields), id).stream().findFirst();
+    }
+
+    private static String selectList(List<String> fields) {
+        List<String> columns = new ArrayList<>(fields.size());
+        for (String field : fields) {
+            columns.add(column(field));
+        }
+        return "SELECT " + String.join(", ", columns);
+    }
+
+    private static String column(String field) {
+        // Only whitelisted names ever reach the SQL text.
+        String column = COLUMNS.get(field);
+        if (column == null) {
+            throw new IllegalArgumentException("Unknown location property: " + field);
+        }
+        return column;
+    }
+
+    private static RowMapper<Map<String, Object>> projectedRowMapper(List<String> fields) {
+        return (rs, rowNum) -> {
+            Map<String, Object> row = new LinkedHashMap<>((int) (fields.size() / 0.75f) + 1);
+            for (int i = 0; i < fields.size(); i++) {
+                Object value = rs.getObject(i + 1);
+                row.put(fields.get(i), value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : value);
+            }
+            return row;
+        };
+    }
+}
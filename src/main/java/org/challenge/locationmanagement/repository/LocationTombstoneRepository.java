@@ -0,0 +1,25 @@
+package org.challenge.locationmanagement.repository;
+
+import org.challenge.locationmanagement.entity.LocationTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+
+@Repository
+public interface LocationTombstoneRepository extends JpaRepository<LocationTombstone, Long> {
+
+    @Query("select t from LocationTombstone t " +
+            "where t.deletedAt <= :upTo " +
+            "and (t.deletedAt > :since or (t.deletedAt = :since and t.locationId > :afterId)) " +
+            "order by t.deletedAt asc, t.locationId asc")
+    List<LocationTombstone> findDeletedSince(@Param("since") LocalDateTime since,
+                                             @Param("afterId") Long afterId,
+                                             @Param("upTo") LocalDateTime upTo,
+                                             Pageable limit);
+}
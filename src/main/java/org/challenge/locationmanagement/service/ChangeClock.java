@@ -0,0 +1,56 @@
+package org.challenge.locationmanagement.service;
+
+import org.challenge.locationmanagement.repository.LocationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Clock of the change feed.
+ *
+ * Changes are stamped with the start time of their transaction by the database clock, in UTC, so
+ * every instance stamps with the same clock and daylight saving time never moves it backwards.
+ * A change becomes visible when its transaction commits. Transactions that write locations run
+ * with the {@link #TRANSACTION_TIMEOUT} of location.changes.transaction-timeout-seconds, so the
+ * feed only returns changes older than the settle window: that timeout plus
+ * location.changes.clock-margin, which covers the commit itself and the difference between the
+ * clocks of the shards. Other transactions are not bounded by it.
+ */
+@Component
+public class ChangeClock {
+
+    /**
+     * Timeout, in seconds, of every transaction that writes locations.
+     */
+    public static final String TRANSACTION_TIMEOUT = "${location.changes.transaction-timeout-seconds:10}";
+
+    private final LocationRepository locationRepository;
+    private final Duration settleWindow;
+
+    public ChangeClock(LocationRepository locationRepository,
+                       @Value(TRANSACTION_TIMEOUT) int transactionTimeoutSeconds,
+                       @Value("${location.changes.clock-margin:2s}") Duration clockMargin) {
+        this.locationRepository = locationRepository;
+        this.settleWindow = Duration.ofSeconds(transactionTimeoutSeconds).plus(clockMargin);
+    }
+
+    /**
+     * @return the time to stamp changes of the current transaction with, on the current shard
+     */
+    public LocalDateTime now() {
+        return locationRepository.currentTimestamp();
+    }
+
+    /**
+     * @return the time up to which every change of the current shard has committed
+     */
+    public LocalDateTime settledUpTo() {
+        return now().minus(settleWindow);
+    }
+
+    public Duration settleWindow() {
+        return settleWindow;
+    }
+}
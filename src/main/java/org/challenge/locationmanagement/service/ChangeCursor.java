@@ -0,0 +1,50 @@
+package org.challenge.locationmanagement.service;
+
+import org.challenge.locationmanagement.exception.ResourceBadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * Position in the change feed, ordered by (changedAt, id).
+ *
+ * The cursor is exchanged with clients as an opaque URL-safe string so its encoding can
+ * evolve without breaking them.
+ */
+public record ChangeCursor(LocalDateTime changedAt, long id) implements Comparable<ChangeCursor> {
+
+    public static final ChangeCursor START = new ChangeCursor(LocalDateTime.of(1970, 1, 1, 0, 0), 0L);
+
+    public static ChangeCursor parse(String value) {
+        if (value == null || value.isBlank()) {
+            return START;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.US_ASCII);
+            int separator = decoded.indexOf(':');
+            long micros = Long.parseLong(decoded.substring(0, separator));
+            long id = Long.parseLong(decoded.substring(separator + 1));
+            LocalDateTime changedAt = LocalDateTime.ofEpochSecond(
+                    Math.floorDiv(micros, 1_000_000L),
+                    (int) Math.floorMod(micros, 1_000_000L) * 1_000,
+                    ZoneOffset.UTC);
+            return new ChangeCursor(changedAt, id);
+        } catch (RuntimeException e) {
+            throw new ResourceBadRequestException("The 'since' cursor is invalid: " + value);
+        }
+    }
+
+    public String encode() {
+        long micros = changedAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + changedAt.getNano() / 1_000;
+        byte[] raw = (micros + ":" + id).getBytes(StandardCharsets.US_ASCII);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    @Override
+    public int compareTo(ChangeCursor other) {
+        int byTime = changedAt.compareTo(other.changedAt);
+        return byTime != 0 ? byTime : Long.compare(id, other.id);
+    }
+}
@@ -0,0 +1,9 @@
+package org.challenge.locationmanagement.service;
+
+import org.challenge.locationmanagement.dto.LocationBatchRequest;
+import org.challenge.locationmanagement.dto.LocationBatchResultDto;
+
+
+public interface LocationBatchService {
+    LocationBatchResultDto executeBatch(LocationBatchRequest batchRequest);
+}
@@ -0,0 +1,15 @@
+package org.challenge.locationmanagement.service;
+
+import org.challenge.locationmanagement.dto.DuplicateScanJobDto;
+
+
+public interface LocationDeduplicationService {
+    /**
+     * Starts a duplicate scan in the background.
+     *
+     * @return the job, to poll with {@link #getScanJob(String)}
+     */
+    DuplicateScanJobDto startScan(boolean merge, int maxClusters);
+
+    DuplicateScanJobDto getScanJob(String jobId);
+}
@@ -1,18 +1,61 @@
 package org.challenge.locationmanagement.service;
 
+import org.challenge.locationmanagement.dto.BulkUpsertResultDto;
+import org.challenge.locationmanagement.dto.LocationChangesDto;
 import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.dto.LocationHistoryDto;
+import org.challenge.locationmanagement.dto.LocationUpsertDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
+import java.util.Map;
+
 
 public interface LocationService {
     LocationDto createLocation(LocationDto locationDto);
 
     LocationDto getLocationById(Long locationId);
 
+    /**
+     * @param fields comma-separated names of the location properties to return; id is always included
+     */
+    Map<String, Object> getLocationById(Long locationId, String fields);
+
     Page<LocationDto> getAllLocations(Pageable pageable);
 
+    /**
+     * @param fields comma-separated names of the location properties to return; id is always included
+     */
+    Page<Map<String, Object>> getAllLocations(Pageable pageable, String fields);
+
     LocationDto updateLocation(Long locationId, LocationDto updatedLocation);
 
+    /**
+     * @param expectedVersion the version the client last saw, or null to update unconditionally
+     */
+    LocationDto updateLocation(Long locationId, LocationDto updatedLocation, Long expectedVersion);
+
     void deleteLocation(Long locationId);
+
+    /**
+     * @param expectedVersion the version the client last saw, or null to delete unconditionally
+     */
+    void deleteLocation(Long locationId, Long expectedVersion);
+
+    /**
+     * Deletes a duplicate and, in the same transaction, moves its external reference onto the
+     * location kept in its place, which keeps its own values, so the next upsert of that reference
+     * with the kept location's city and state finds it. Each location is only changed if it is
+     * still at the version given.
+     *
+     * @return the kept location
+     */
+    LocationDto mergeLocation(Long keptId, Long keptVersion, Long duplicateId, Long duplicateVersion);
+
+    LocationChangesDto getLocationChanges(String since, int limit);
+
+    BulkUpsertResultDto upsertLocations(List<LocationUpsertDto> locations);
+
+    Page<LocationHistoryDto> getLocationHistory(Long locationId, Pageable pageable);
 }
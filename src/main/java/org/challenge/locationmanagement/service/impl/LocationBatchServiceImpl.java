@@ -0,0 +1,274 @@
+package org.challenge.locationmanagement.service.impl;
+
+import org.challenge.locationmanagement.dto.LocationBatchRequest;
+import org.challenge.locationmanagement.dto.LocationBatchResultDto;
+import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.dto.LocationOperationDto;
+import org.challenge.locationmanagement.dto.LocationOperationResultDto;
+import org.challenge.locationmanagement.entity.Location;
+import org.challenge.locationmanagement.event.LocationChangedEvent;
+import org.challenge.locationmanagement.mapper.LocationMapper;
+import org.challenge.locationmanagement.repository.LocationRepository;
+import org.challenge.locationmanagement.service.ChangeClock;
+import org.challenge.locationmanagement.service.LocationBatchService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Executes a batch of location operations in one transaction.
+ *
+ * Consecutive operations of the same type are sent to the database as a single JDBC batch. An
+ * operation that repeats an id already in the current run starts a new run, so its result
+ * reflects the state after the operations before it. Operations that fail with not found,
+ * version mismatch or invalid input are reported per operation; in ATOMIC mode the first such
+ * failure rolls the whole batch back, while CONTINUE_ON_ERROR commits the operations that
+ * succeeded. Any other error rolls the batch back in both modes.
+ */
+@Service
+public class LocationBatchServiceImpl implements LocationBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationBatchServiceImpl.class);
+
+    private final LocationRepository locationRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public LocationBatchServiceImpl(LocationRepository locationRepository,
+                                    ApplicationEventPublisher eventPublisher,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value(ChangeClock.TRANSACTION_TIMEOUT) int transactionTimeoutSeconds) {
+        this(locationRepository, eventPublisher, new TransactionTemplate(transactionManager));
+        transactionTemplate.setTimeout(transactionTimeoutSeconds);
+    }
+
+    LocationBatchServiceImpl(LocationRepository locationRepository, ApplicationEventPublisher eventPublisher,
+                             TransactionTemplate transactionTemplate) {
+        this.locationRepository = locationRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public LocationBatchResultDto executeBatch(LocationBatchRequest batchRequest) {
+        List<LocationOperationDto> operations = batchRequest.getOperations();
+        LocationBatchRequest.Mode mode = batchRequest.getMode() == null ? LocationBatchRequest.Mode.ATOMIC : batchRequest.getMode();
+        LocationOperationResultDto[] results = new LocationOperationResultDto[operations.size()];
+
+        boolean valid = validate(operations, results);
+        if (!valid && mode == LocationBatchRequest.Mode.ATOMIC) {
+            // Nothing to roll back: no operation has reached the database yet.
+            return rolledBack(mode, operations, results);
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> execute(operations, mode, results));
+        } catch (BatchRolledBackException e) {
+            return rolledBack(mode, operations, results);
+        }
+
+        LocationBatchResultDto result = summarize(mode, true, results);
+        logger.info("executeBatch: {} batch of {} operations committed, {} succeeded, {} failed",
+                mode, operations.size(), result.getSucceeded(), result.getFailed());
+        return result;
+    }
+
+    private static boolean validate(List<LocationOperationDto> operations, LocationOperationResultDto[] results) {
+        boolean valid = true;
+        for (int i = 0; i < operations.size(); i++) {
+            LocationOperationDto operation = operations.get(i);
+            String error = null;
+            if (operation.getType() != LocationOperationDto.Type.CREATE && operation.getId() == null) {
+                error = "The 'id' parameter is required for " + operation.getType() + " operations.";
+            } else if (operation.getType() != LocationOperationDto.Type.DELETE && operation.getLocation() == null) {
+                error = "The 'location' parameter is required for " + operation.getType() + " operations.";
+            }
+            if (error != null) {
+                results[i] = failure(i, operation, HttpStatus.BAD_REQUEST, error);
+                valid = false;
+            }
+        }
+        return valid;
+    }
+
+    private void execute(List<LocationOperationDto> operations, LocationBatchRequest.Mode mode,
+                         LocationOperationResultDto[] results) {
+        List<Integer> run = new ArrayList<>();
+        Set<Long> runIds = new HashSet<>();
+        LocationOperationDto.Type runType = null;
+
+        for (int i = 0; i < operations.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            LocationOperationDto operation = operations.get(i);
+            boolean extendsRun = operation.getType() == runType
+                    && (runType == LocationOperationDto.Type.CREATE || !runIds.contains(operation.getId()));
+            if (!extendsRun && !run.isEmpty()) {
+                executeRun(runType, run, operations, mode, results);
+                run.clear();
+                runIds.clear();
+            }
+            runType = operation.getType();
+            run.add(i);
+            if (operation.getId() != null) {
+                runIds.add(operation.getId());
+            }
+        }
+        if (!run.isEmpty()) {
+            executeRun(runType, run, operations, mode, results);
+        }
+    }
+
+    private void executeRun(LocationOperationDto.Type type, List<Integer> run, List<LocationOperationDto> operations,
+                            LocationBatchRequest.Mode mode, LocationOperationResultDto[] results) {
+        switch (type) {
+            case CREATE -> createAll(run, operations, results);
+            case UPDATE -> updateAll(run, operations, results);
+            case DELETE -> deleteAll(run, operations, results);
+        }
+
+        if (mode == LocationBatchRequest.Mode.ATOMIC) {
+            for (int index : run) {
+                if (results[index].getError() != null) {
+                    throw new BatchRolledBackException();
+                }
+            }
+        }
+    }
+
+    private void createAll(List<Integer> run, List<LocationOperationDto> operations, LocationOperationResultDto[] results) {
+        List<Location> locations = run.stream()
+                .map(index -> LocationMapper.mapToLocation(operations.get(index).getLocation()))
+                .toList();
+        List<Location> created = locationRepository.insertAll(locations);
+
+        for (int k = 0; k < run.size(); k++) {
+            LocationDto createdDto = LocationMapper.mapToLocationDto(created.get(k));
+            results[run.get(k)] = success(run.get(k), operations.get(run.get(k)), HttpStatus.CREATED, createdDto);
+            eventPublisher.publishEvent(LocationChangedEvent.created(createdDto));
+        }
+    }
+
+    private void updateAll(List<Integer> run, List<LocationOperationDto> operations, LocationOperationResultDto[] results) {
+        List<Location> updates = new ArrayList<>(run.size());
+        for (int index : run) {
+            LocationOperationDto operation = operations.get(index);
+            Location location = LocationMapper.mapToLocation(operation.getLocation());
+            location.setId(operation.getId());
+            location.setVersion(operation.getVersion());
+            updates.add(location);
+        }
+        int[] updatedRows = locationRepository.updateAll(updates);
+
+        List<Long> updatedIds = new ArrayList<>();
+        for (int k = 0; k < run.size(); k++) {
+            if (updatedRows[k] != 0) {
+                updatedIds.add(operations.get(run.get(k)).getId());
+            }
+        }
+        Map<Long, Location> current = locationRepository.findAllCurrent(updatedIds).stream()
+                .collect(Collectors.toMap(Location::getId, Function.identity()));
+
+        for (int k = 0; k < run.size(); k++) {
+            int index = run.get(k);
+            LocationOperationDto operation = operations.get(index);
+            if (updatedRows[k] == 0) {
+                results[index] = notFoundOrVersionMismatch(index, operation, "Location does not exist with given id: ");
+                continue;
+            }
+            LocationDto updatedDto = LocationMapper.mapToLocationDto(current.get(operation.getId()));
+            results[index] = success(index, operation, HttpStatus.OK, updatedDto);
+            eventPublisher.publishEvent(LocationChangedEvent.updated(updatedDto));
+        }
+    }
+
+    private void deleteAll(List<Integer> run, List<LocationOperationDto> operations, LocationOperationResultDto[] results) {
+        List<Long> ids = new ArrayList<>(run.size());
+        List<Long> expectedVersions = new ArrayList<>(run.size());
+        for (int index : run) {
+            ids.add(operations.get(index).getId());
+            expectedVersions.add(operations.get(index).getVersion());
+        }
+        int[] deletedRows = locationRepository.deleteAll(ids, expectedVersions);
+
+        for (int k = 0; k < run.size(); k++) {
+            int index = run.get(k);
+            LocationOperationDto operation = operations.get(index);
+            if (deletedRows[k] == 0) {
+                results[index] = notFoundOrVersionMismatch(index, operation, "Location is not exists with given id: ");
+                continue;
+            }
+            results[index] = success(index, operation, HttpStatus.OK, null);
+            eventPublisher.publishEvent(LocationChangedEvent.deleted(operation.getId()));
+        }
+    }
+
+    private LocationOperationResultDto notFoundOrVersionMismatch(int index, LocationOperationDto operation,
+                                                                 String notFoundMessage) {
+        if (operation.getVersion() != null && locationRepository.existsById(operation.getId())) {
+            return failure(index, operation, HttpStatus.PRECONDITION_FAILED,
+                    "Location with id " + operation.getId() + " was modified: it is no longer at version " + operation.getVersion());
+        }
+        return failure(index, operation, HttpStatus.NOT_FOUND, notFoundMessage + operation.getId());
+    }
+
+    private static LocationBatchResultDto rolledBack(LocationBatchRequest.Mode mode, List<LocationOperationDto> operations,
+                                                     LocationOperationResultDto[] results) {
+        int failedIndex = 0;
+        while (results[failedIndex] == null || results[failedIndex].getError() == null) {
+            failedIndex++;
+        }
+        logger.info("executeBatch: Batch rolled back, operation {} failed: {}", failedIndex, results[failedIndex].getError());
+
+        String reason = "Not applied: the batch was rolled back because operation " + failedIndex + " failed.";
+        for (int i = 0; i < results.length; i++) {
+            if (i != failedIndex && (results[i] == null || results[i].getError() == null)) {
+                results[i] = failure(i, operations.get(i), HttpStatus.FAILED_DEPENDENCY, reason);
+            }
+        }
+        return summarize(mode, false, results);
+    }
+
+    private static LocationBatchResultDto summarize(LocationBatchRequest.Mode mode, boolean committed,
+                                                    LocationOperationResultDto[] results) {
+        int succeeded = 0;
+        for (LocationOperationResultDto result : results) {
+            if (result.getError() == null) {
+                succeeded++;
+            }
+        }
+        return new LocationBatchResultDto(mode, committed, succeeded, results.length - succeeded, Arrays.asList(results));
+    }
+
+    private static LocationOperationResultDto success(int index, LocationOperationDto operation, HttpStatus status,
+                                                      LocationDto location) {
+        Long id = location != null ? location.getId() : operation.getId();
+        return new LocationOperationResultDto(index, operation.getType(), status.value(), id, location, null);
+    }
+
+    private static LocationOperationResultDto failure(int index, LocationOperationDto operation, HttpStatus status,
+                                                      String error) {
+        return new LocationOperationResultDto(index, operation.getType(), status.value(), operation.getId(), null, error);
+    }
+
+    /**
+     * Thrown inside the transaction callback to roll an ATOMIC batch back once an operation failed.
+     */
+    private static class BatchRolledBackException extends RuntimeException {
+        BatchRolledBackException() {
+            super(null, null, false, false);
+        }
+    }
+}
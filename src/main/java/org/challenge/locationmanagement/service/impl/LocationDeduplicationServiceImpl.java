@@ -0,0 +1,490 @@
+package org.challenge.locationmanagement.service.impl;
+
+import org.challenge.locationmanagement.dto.DuplicateClusterDto;
+import org.challenge.locationmanagement.dto.DuplicateReportDto;
+import org.challenge.locationmanagement.dto.DuplicateScanJobDto;
+import org.challenge.locationmanagement.entity.Location;
+import org.challenge.locationmanagement.exception.ResourceConflictException;
+import org.challenge.locationmanagement.exception.ResourceNotFoundException;
+import org.challenge.locationmanagement.exception.ResourcePreconditionFailedException;
+import org.challenge.locationmanagement.repository.LocationRepository;
+import org.challenge.locationmanagement.service.LocationDeduplicationService;
+import org.challenge.locationmanagement.service.LocationService;
+import org.challenge.locationmanagement.sharding.ShardContext;
+import org.challenge.locationmanagement.sharding.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Finds locations whose name, neighborhood, city and state differ only in case, accents or
+ * whitespace, and optionally deletes all but the oldest of each cluster.
+ *
+ * The table is read once in id order. Each location is reduced to a 64-bit hash of its
+ * normalised fields, and the hash and id are appended to one of location.dedup.partitions spill
+ * files chosen by the hash, so candidates for the same cluster always share a file. The files
+ * are then grouped in parallel on a fork-join pool: each is read into memory and its repeated
+ * hashes are looked up again and compared field by field, so a hash collision never merges two
+ * different locations. Memory is bounded by one partition per worker, not by the table.
+ *
+ * A scan reads the whole table, so it runs as a background job on a single thread of its own
+ * rather than on a request thread; the job is polled by id, and the last few jobs are kept.
+ */
+@Service
+public class LocationDeduplicationServiceImpl implements LocationDeduplicationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationDeduplicationServiceImpl.class);
+
+    private static final int SCAN_BATCH_SIZE = 10_000;
+    private static final int FETCH_BATCH_SIZE = 1_000;
+    private static final int RECORD_BYTES = 2 * Long.BYTES;
+    private static final int SPILL_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_RETAINED_JOBS = 16;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // Separates the fields in a key; cannot appear in a normalised field.
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    private final LocationRepository locationRepository;
+    private final LocationService locationService;
+    private final ShardRouter shardRouter;
+    private final int partitions;
+    private final Path spillDirectory;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService scanner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "location-dedup-scan");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Insertion ordered, so the oldest job is evicted first; only the newest can still be running.
+    private final Map<String, DuplicateScanJobDto> jobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DuplicateScanJobDto> eldest) {
+            return size() > MAX_RETAINED_JOBS;
+        }
+    };
+
+    /**
+     * @param locationService used to delete the duplicates, so a merge publishes the same events as any other delete
+     */
+    public LocationDeduplicationServiceImpl(LocationRepository locationRepository,
+                                            LocationService locationService,
+                                            ShardRouter shardRouter,
+                                            @Value("${location.dedup.partitions:64}") int partitions,
+                                            @Value("${location.dedup.spill-directory:${java.io.tmpdir}}") String spillDirectory) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("location.dedup.partitions must be at least 1");
+        }
+        this.locationRepository = locationRepository;
+        this.locationService = locationService;
+        this.shardRouter = shardRouter;
+        this.partitions = partitions;
+        this.spillDirectory = Path.of(spillDirectory);
+    }
+
+    @Override
+    public DuplicateScanJobDto startScan(boolean merge, int maxClusters) {
+        if (!running.compareAndSet(false, true)) {
+            throw new ResourceConflictException("A duplicate location scan is already running.");
+        }
+        String jobId = UUID.randomUUID().toString();
+        LocalDateTime startedAt = LocalDateTime.now(ZoneOffset.UTC);
+        DuplicateScanJobDto job = new DuplicateScanJobDto(jobId, DuplicateScanJobDto.Status.RUNNING, merge, startedAt,
+                null, null, null);
+        saveJob(job);
+        try {
+            scanner.execute(() -> runScan(jobId, merge, maxClusters, startedAt));
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        logger.info("startScan: Started duplicate scan {} with merge={}", jobId, merge);
+        return job;
+    }
+
+    @Override
+    public DuplicateScanJobDto getScanJob(String jobId) {
+        synchronized (jobs) {
+            DuplicateScanJobDto job = jobs.get(jobId);
+            if (job == null) {
+                throw new ResourceNotFoundException("Duplicate scan does not exist with given id: " + jobId);
+            }
+            return job;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scanner.shutdownNow();
+    }
+
+    private void runScan(String jobId, boolean merge, int maxClusters, LocalDateTime startedAt) {
+        try {
+            DuplicateReportDto report = findDuplicates(merge, maxClusters);
+            saveJob(new DuplicateScanJobDto(jobId, DuplicateScanJobDto.Status.SUCCEEDED, merge, startedAt,
+                    LocalDateTime.now(ZoneOffset.UTC), null, report));
+        } catch (RuntimeException e) {
+            logger.error("runScan: Duplicate scan {} failed", jobId, e);
+            saveJob(new DuplicateScanJobDto(jobId, DuplicateScanJobDto.Status.FAILED, merge, startedAt,
+                    LocalDateTime.now(ZoneOffset.UTC), e.getMessage(), null));
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void saveJob(DuplicateScanJobDto job) {
+        synchronized (jobs) {
+            jobs.put(job.getJobId(), job);
+        }
+    }
+
+    /**
+     * Runs a scan on the calling thread.
+     */
+    DuplicateReportDto findDuplicates(boolean merge, int maxClusters) {
+        Path workDirectory = null;
+        try {
+            long started = System.nanoTime();
+            Files.createDirectories(spillDirectory);
+            workDirectory = Files.createTempDirectory(spillDirectory, "location-dedup-");
+            long scanned = spill(workDirectory);
+
+            ForkJoinPool pool = new ForkJoinPool(Math.min(partitions, Runtime.getRuntime().availableProcessors()));
+            PartitionResult result;
+            try {
+                result = pool.invoke(new PartitionTask(workDirectory, 0, partitions, merge, maxClusters));
+            } finally {
+                pool.shutdown();
+            }
+            result.trim();
+
+            logger.info("findDuplicates: Scanned {} locations in {} ms, found {} clusters with {} duplicates, deleted {}, skipped {}",
+                    scanned, (System.nanoTime() - started) / 1_000_000, result.clusterCount, result.duplicateCount,
+                    result.deleted, result.skipped);
+            return new DuplicateReportDto(merge, scanned, result.clusterCount, result.duplicateCount,
+                    result.deleted, result.skipped, result.clusters);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spill locations for the duplicate scan", e);
+        } finally {
+            deleteRecursively(workDirectory);
+        }
+    }
+
+    /**
+     * Lowercases and strips accents, then trims and collapses whitespace; null becomes empty.
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String unaccented = MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("");
+        return WHITESPACE.matcher(unaccented.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    static String key(Location location) {
+        return normalize(location.getName()) + FIELD_SEPARATOR + normalize(location.getNeighborhood())
+                + FIELD_SEPARATOR + normalize(location.getCity()) + FIELD_SEPARATOR + normalize(location.getState());
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer so that the low
+     * bits used to pick a partition are evenly spread.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private long spill(Path workDirectory) throws IOException {
+        DataOutputStream[] files = new DataOutputStream[partitions];
+        try {
+            for (int partition = 0; partition < partitions; partition++) {
+                files[partition] = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(partitionFile(workDirectory, partition)), SPILL_BUFFER_BYTES));
+            }
+            long scanned = 0;
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                scanned += ShardContext.call(shard, () -> spillShard(files));
+            }
+            return scanned;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (DataOutputStream file : files) {
+                if (file != null) {
+                    file.close();
+                }
+            }
+        }
+    }
+
+    private long spillShard(DataOutputStream[] files) {
+        long scanned = 0;
+        long afterId = 0;
+        List<Location> batch;
+        do {
+            batch = locationRepository.findAfter(afterId, PageRequest.of(0, SCAN_BATCH_SIZE));
+            try {
+                for (Location location : batch) {
+                    long hash = hash(key(location));
+                    DataOutputStream file = files[partitionOf(hash)];
+                    file.writeLong(hash);
+                    file.writeLong(location.getId());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            scanned += batch.size();
+            if (!batch.isEmpty()) {
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+        } while (batch.size() == SCAN_BATCH_SIZE);
+        return scanned;
+    }
+
+    private int partitionOf(long hash) {
+        return (int) Long.remainderUnsigned(hash, partitions);
+    }
+
+    private static Path partitionFile(Path workDirectory, int partition) {
+        return workDirectory.resolve("partition-" + partition);
+    }
+
+    private PartitionResult groupPartition(Path workDirectory, int partition, boolean merge, int maxClusters) {
+        Map<Long, List<Long>> candidates = candidates(partitionFile(workDirectory, partition));
+        PartitionResult result = new PartitionResult(maxClusters);
+        if (candidates.isEmpty()) {
+            return result;
+        }
+
+        Map<Long, Location> current = fetch(candidates.values().stream().flatMap(List::stream).toList());
+        for (List<Long> ids : candidates.values()) {
+            // Equal hashes only make a candidate; equal keys make a cluster.
+            Map<String, List<Location>> clusters = new LinkedHashMap<>();
+            for (Long id : ids) {
+                Location location = current.get(id);
+                if (location != null) {
+                    clusters.computeIfAbsent(key(location), k -> new ArrayList<>()).add(location);
+                }
+            }
+            for (List<Location> cluster : clusters.values()) {
+                if (cluster.size() > 1) {
+                    result.add(cluster, merge ? deleteDuplicates(cluster) : 0, merge);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a partition file and returns the ids of every hash that occurs more than once, in
+     * ascending order.
+     */
+    private static Map<Long, List<Long>> candidates(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), SPILL_BUFFER_BYTES))) {
+            int count = Math.toIntExact(Files.size(file) / RECORD_BYTES);
+            long[] hashes = new long[count];
+            long[] ids = new long[count];
+            for (int i = 0; i < count; i++) {
+                hashes[i] = in.readLong();
+                ids[i] = in.readLong();
+            }
+
+            long[] sorted = hashes.clone();
+            Arrays.sort(sorted);
+            Set<Long> repeated = new HashSet<>();
+            for (int i = 1; i < count; i++) {
+                if (sorted[i] == sorted[i - 1]) {
+                    repeated.add(sorted[i]);
+                }
+            }
+
+            Map<Long, List<Long>> candidates = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                if (repeated.contains(hashes[i])) {
+                    candidates.computeIfAbsent(hashes[i], hash -> new ArrayList<>()).add(ids[i]);
+                }
+            }
+            candidates.values().forEach(Collections::sort);
+            return candidates;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read duplicate scan partition " + file, e);
+        }
+    }
+
+    /**
+     * Reads the candidates again, from their own shards, so clusters are built from current rows.
+     */
+    private Map<Long, Location> fetch(List<Long> ids) {
+        Map<Integer, List<Long>> idsByShard = new TreeMap<>();
+        for (Long id : ids) {
+            idsByShard.computeIfAbsent(shardRouter.shardForId(id), shard -> new ArrayList<>()).add(id);
+        }
+        Map<Long, Location> locations = new HashMap<>();
+        idsByShard.forEach((shard, shardIds) -> {
+            for (int from = 0; from < shardIds.size(); from += FETCH_BATCH_SIZE) {
+                List<Long> batch = shardIds.subList(from, Math.min(from + FETCH_BATCH_SIZE, shardIds.size()));
+                ShardContext.call(shard, () -> locationRepository.findAllCurrent(batch))
+                        .forEach(location -> locations.put(location.getId(), location));
+            }
+        });
+        return locations;
+    }
+
+    /**
+     * Deletes every location of the cluster but the first, each only if it is still at the
+     * version that was compared. A duplicate with an external reference is merged instead, so
+     * the reference moves to the kept location; it is skipped if the kept location already has
+     * one or lives on another shard, since the next upsert of the reference would create it again,
+     * or if another location holds the reference with the kept location's city and state.
+     *
+     * @return the number of locations deleted
+     */
+    private int deleteDuplicates(List<Location> cluster) {
+        Location kept = cluster.get(0);
+        boolean keptHasRef = kept.getExternalRef() != null;
+        int deleted = 0;
+        for (Location duplicate : cluster.subList(1, cluster.size())) {
+            try {
+                if (duplicate.getExternalRef() == null) {
+                    locationService.deleteLocation(duplicate.getId(), duplicate.getVersion());
+                } else if (keptHasRef || shardRouter.shardForId(duplicate.getId()) != shardRouter.shardForId(kept.getId())) {
+                    logger.info("deleteDuplicates: Skipped location {}: its external reference cannot move to location {}",
+                            duplicate.getId(), kept.getId());
+                    continue;
+                } else {
+                    locationService.mergeLocation(kept.getId(), kept.getVersion(), duplicate.getId(), duplicate.getVersion());
+                    keptHasRef = true;
+                }
+                deleted++;
+            } catch (ResourceNotFoundException | ResourcePreconditionFailedException e) {
+                logger.info("deleteDuplicates: Skipped location {}: {}", duplicate.getId(), e.getMessage());
+            }
+        }
+        return deleted;
+    }
+
+    private static void deleteRecursively(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            logger.warn("deleteRecursively: Could not delete {}", directory, e);
+        }
+    }
+
+    private final class PartitionTask extends RecursiveTask<PartitionResult> {
+
+        private final Path workDirectory;
+        private final int from;
+        private final int to;
+        private final boolean merge;
+        private final int maxClusters;
+
+        private PartitionTask(Path workDirectory, int from, int to, boolean merge, int maxClusters) {
+            this.workDirectory = workDirectory;
+            this.from = from;
+            this.to = to;
+            this.merge = merge;
+            this.maxClusters = maxClusters;
+        }
+
+        @Override
+        protected PartitionResult compute() {
+            if (to - from == 1) {
+                return groupPartition(workDirectory, from, merge, maxClusters);
+            }
+            int middle = (from + to) >>> 1;
+            PartitionTask left = new PartitionTask(workDirectory, from, middle, merge, maxClusters);
+            left.fork();
+            PartitionResult right = new PartitionTask(workDirectory, middle, to, merge, maxClusters).compute();
+            return left.join().combine(right);
+        }
+    }
+
+    /**
+     * Counts of one or more partitions, with the clusters of lowest kept id up to maxClusters.
+     */
+    private static final class PartitionResult {
+
+        private final int maxClusters;
+        private final List<DuplicateClusterDto> clusters = new ArrayList<>();
+        private long clusterCount;
+        private long duplicateCount;
+        private long deleted;
+        private long skipped;
+
+        private PartitionResult(int maxClusters) {
+            this.maxClusters = maxClusters;
+        }
+
+        private void add(List<Location> cluster, int deletedFromCluster, boolean merge) {
+            Location kept = cluster.get(0);
+            List<Long> duplicateIds = cluster.subList(1, cluster.size()).stream().map(Location::getId).toList();
+            clusterCount++;
+            duplicateCount += duplicateIds.size();
+            deleted += deletedFromCluster;
+            if (merge) {
+                skipped += duplicateIds.size() - deletedFromCluster;
+            }
+            clusters.add(new DuplicateClusterDto(kept.getId(), duplicateIds, kept.getName(), kept.getNeighborhood(),
+                    kept.getCity(), kept.getState()));
+            // Trimmed only now and then, so a partition full of clusters is not sorted once per cluster.
+            if (clusters.size() > 2 * maxClusters + 16) {
+                trim();
+            }
+        }
+
+        private PartitionResult combine(PartitionResult other) {
+            clusterCount += other.clusterCount;
+            duplicateCount += other.duplicateCount;
+            deleted += other.deleted;
+            skipped += other.skipped;
+            clusters.addAll(other.clusters);
+            trim();
+            return this;
+        }
+
+        private void trim() {
+            clusters.sort(Comparator.comparing(DuplicateClusterDto::getKeptId));
+            if (clusters.size() > maxClusters) {
+                clusters.subList(maxClusters, clusters.size()).clear();
+            }
+        }
+    }
+}
@@ -1,31 +1,67 @@
 package org.challenge.locationmanagement.service.impl;
 
-import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
+import org.challenge.locationmanagement.concurrency.SingleFlight;
+import org.challenge.locationmanagement.dto.BulkUpsertResultDto;
+import org.challenge.locationmanagement.dto.LocationChangeDto;
+import org.challenge.locationmanagement.dto.LocationChangesDto;
 import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.dto.LocationHistoryDto;
+import org.challenge.locationmanagement.dto.LocationUpsertDto;
 import org.challenge.locationmanagement.entity.Location;
+import org.challenge.locationmanagement.entity.LocationTombstone;
+import org.challenge.locationmanagement.event.LocationChangedEvent;
+import org.challenge.locationmanagement.exception.ResourceBadRequestException;
 import org.challenge.locationmanagement.exception.ResourceNotFoundException;
+import org.challenge.locationmanagement.exception.ResourcePreconditionFailedException;
+import org.challenge.locationmanagement.lookup.LocationIdFilter;
 import org.challenge.locationmanagement.mapper.LocationMapper;
+import org.challenge.locationmanagement.readstore.LocationReadStore;
+import org.challenge.locationmanagement.repository.LocationHistoryRepository;
 import org.challenge.locationmanagement.repository.LocationRepository;
+import org.challenge.locationmanagement.repository.LocationRepositoryCustom;
+import org.challenge.locationmanagement.repository.LocationRepositoryCustom.UpsertedLocation;
+import org.challenge.locationmanagement.repository.LocationTombstoneRepository;
+import org.challenge.locationmanagement.service.ChangeClock;
+import org.challenge.locationmanagement.service.ChangeCursor;
+import org.challenge.locationmanagement.sharding.ShardContext;
 import org.challenge.locationmanagement.service.LocationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
 
 
 @Service
 @AllArgsConstructor
 public class LocationServiceImpl implements LocationService {
 
+    private static final Duration COALESCED_LOOKUP_TIMEOUT = Duration.ofSeconds(10);
+
     private LocationRepository locationRepository;
+    private LocationTombstoneRepository locationTombstoneRepository;
+    private ApplicationEventPublisher eventPublisher;
+    private LocationIdFilter locationIdFilter;
+    private LocationHistoryRepository locationHistoryRepository;
+    private LocationReadStore locationReadStore;
+    private ChangeClock changeClock;
+
+    // Concurrent reads of the same id or page share a single database query.
+    private final SingleFlight<Long, Optional<Location>> locationLookups = new SingleFlight<>(COALESCED_LOOKUP_TIMEOUT);
+    private final SingleFlight<PageKey, Page<Location>> pageLookups = new SingleFlight<>(COALESCED_LOOKUP_TIMEOUT);
     private static final Logger logger = LoggerFactory.getLogger(LocationServiceImpl.class);
 
     @Override
-    @Transactional
+    @Transactional(timeoutString = ChangeClock.TRANSACTION_TIMEOUT)
     public LocationDto createLocation(LocationDto locationDto) {
 
         Location location = LocationMapper.mapToLocation(locationDto);
@@ -33,14 +69,28 @@ public class LocationServiceImpl implements LocationService {
 
         logger.info("createLocation: Location created with ID: {}", savedLocation.getId());
 
-        return LocationMapper.mapToLocationDto(savedLocation);
+        LocationDto savedLocationDto = LocationMapper.mapToLocationDto(savedLocation);
+        eventPublisher.publishEvent(LocationChangedEvent.created(savedLocationDto));
+        return savedLocationDto;
     }
 
     @Override
     public LocationDto getLocationById(Long locationId) {
-        Location location = locationRepository.findById(locationId)
+        if (locationIdFilter.isDefinitelyAbsent(locationId)) {
+            logger.debug("getLocationById: Location not found with ID: {} (id filter)", locationId);
+            throw new ResourceNotFoundException("Location is not exists with given id: " + locationId);
+        }
+
+        // A location missing from the store may have been created through another instance: ask the database.
+        Optional<LocationDto> stored = locationReadStore.findById(locationId);
+        if (stored.isPresent()) {
+            logger.debug("getLocationById: Location found with ID: {} (read store)", locationId);
+            return stored.get();
+        }
+
+        Location location = locationLookups.execute(locationId, () -> locationRepository.findById(locationId))
                 .orElseThrow(() -> {
-                    logger.error("getLocationById: Location not found with ID: {}", locationId);
+                    logger.debug("getLocationById: Location not found with ID: {}", locationId);
                     return new ResourceNotFoundException("Location is not exists with given id: " + locationId);
                 });
 
@@ -49,6 +99,26 @@ public class LocationServiceImpl implements LocationService {
         return LocationMapper.mapToLocationDto(location);
     }
 
+    @Override
+    public Map<String, Object> getLocationById(Long locationId, String fields) {
+        List<String> selectedFields = parseFields(fields);
+        if (locationIdFilter.isDefinitelyAbsent(locationId)) {
+            logger.debug("getLocationById: Location not found with ID: {} (id filter)", locationId);
+            throw new ResourceNotFoundException("Location is not exists with given id: " + locationId);
+        }
+
+        Optional<LocationDto> stored = locationReadStore.findById(locationId);
+        if (stored.isPresent()) {
+            return LocationMapper.mapToFields(stored.get(), selectedFields);
+        }
+
+        return locationRepository.findProjectedById(locationId, selectedFields)
+                .orElseThrow(() -> {
+                    logger.debug("getLocationById: Location not found with ID: {}", locationId);
+                    return new ResourceNotFoundException("Location is not exists with given id: " + locationId);
+                });
+    }
+
     @Override
     public Page<LocationDto> getAllLocations(Pageable pageable) {
 
@@ -60,7 +130,14 @@ public class LocationServiceImpl implements LocationService {
                 sort
         );
 
-        Page<Location> locationPage = locationRepository.findAll(sortedPageable);
+        if (locationReadStore.isServing() && locationReadStore.supports(sort)) {
+            Page<LocationDto> storedPage = locationReadStore.findAll(sortedPageable);
+            logger.debug("getAllLocations: Retrieved {} locations (read store)", storedPage.getTotalElements());
+            return storedPage;
+        }
+
+        Page<Location> locationPage = pageLookups.execute(new PageKey(ShardContext.current(), sortedPageable),
+                () -> locationRepository.findAll(sortedPageable));
         Page<LocationDto> locationDtoPage = locationPage.map(LocationMapper::mapToLocationDto);
 
         logger.info("getAllLocations: Retrieved {} locations", locationDtoPage.getTotalElements());
@@ -68,39 +145,259 @@ public class LocationServiceImpl implements LocationService {
     }
 
     @Override
-    @Transactional
+    public Page<Map<String, Object>> getAllLocations(Pageable pageable, String fields) {
+        List<String> selectedFields = parseFields(fields);
+
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : Sort.by("createdAt").ascending();
+        for (Sort.Order order : sort) {
+            if (!LocationRepositoryCustom.PROJECTABLE_FIELDS.contains(order.getProperty())) {
+                throw new ResourceBadRequestException("Cannot sort locations by '" + order.getProperty() + "'.");
+            }
+        }
+
+        Pageable sortedPageable = PageRequest.of(
+                pageable.getPageNumber(),
+                pageable.getPageSize(),
+                sort
+        );
+
+        if (locationReadStore.isServing()) {
+            return locationReadStore.findAll(sortedPageable)
+                    .map(location -> LocationMapper.mapToFields(location, selectedFields));
+        }
+
+        Page<Map<String, Object>> locationPage = locationRepository.findAllProjected(selectedFields, sortedPageable);
+
+        logger.info("getAllLocations: Retrieved {} locations with fields {}", locationPage.getTotalElements(), selectedFields);
+        return locationPage;
+    }
+
+    @Override
+    @Transactional(timeoutString = ChangeClock.TRANSACTION_TIMEOUT)
     public LocationDto updateLocation(Long locationId, LocationDto updatedLocation) {
+        return updateLocation(locationId, updatedLocation, null);
+    }
 
-        Location location = locationRepository.findById(locationId)
-                .orElseThrow(() -> {
-                    String errorMessage = "Location does not exist with given id: " + locationId;
-                    logger.error("updateLocation: {}", errorMessage);
-                    return new ResourceNotFoundException(errorMessage);
-                });
+    @Override
+    @Transactional(timeoutString = ChangeClock.TRANSACTION_TIMEOUT)
+    public LocationDto updateLocation(Long locationId, LocationDto updatedLocation, Long expectedVersion) {
 
-        location.setName(updatedLocation.getName());
-        location.setNeighborhood(updatedLocation.getNeighborhood());
-        location.setCity(updatedLocation.getCity());
-        location.setState(updatedLocation.getState());
+        // The version check and the write are a single conditional UPDATE: no read-then-write window.
+        int updatedRows = expectedVersion == null
+                ? locationRepository.updateLocation(locationId, updatedLocation.getName(), updatedLocation.getNeighborhood(),
+                        updatedLocation.getCity(), updatedLocation.getState())
+                : locationRepository.updateLocationIfVersion(locationId, expectedVersion, updatedLocation.getName(),
+                        updatedLocation.getNeighborhood(), updatedLocation.getCity(), updatedLocation.getState());
 
-        Location updatedLocationObj = locationRepository.saveAndFlush(location);
+        if (updatedRows == 0) {
+            throw notFoundOrVersionMismatch("updateLocation", locationId, expectedVersion,
+                    "Location does not exist with given id: " + locationId);
+        }
+
+        Location updatedLocationObj = locationRepository.findById(locationId)
+                .orElseThrow(() -> new ResourceNotFoundException("Location does not exist with given id: " + locationId));
         logger.info("updateLocation: Location with ID {} updated successfully", locationId);
 
-        return LocationMapper.mapToLocationDto(updatedLocationObj);
+        LocationDto updatedLocationDto = LocationMapper.mapToLocationDto(updatedLocationObj);
+        eventPublisher.publishEvent(LocationChangedEvent.updated(updatedLocationDto));
+        return updatedLocationDto;
     }
 
     @Override
-    @Transactional
+    @Transactional(timeoutString = ChangeClock.TRANSACTION_TIMEOUT)
     public void deleteLocation(Long locationId) {
+        deleteLocation(locationId, null);
+    }
+
+    @Override
+    @Transactional(timeoutString = ChangeClock.TRANSACTION_TIMEOUT)
+    public void deleteLocation(Long locationId, Long expectedVersion) {
 
-        locationRepository.findById(locationId).orElseThrow(() -> {
-            logger.error("deleteLocation: Location with ID {} not found", locationId);
-            return new ResourceNotFoundException("Location is not exists with given id: " + locationId);
-        });
+        int deletedRows = expectedVersion == null
+                ? locationRepository.deleteLocation(locationId)
+                : locationRepository.deleteLocationIfVersion(locationId, expectedVersion);
 
-        locationRepository.deleteById(locationId);
+        if (deletedRows == 0) {
+            throw notFoundOrVersionMismatch("deleteLocation", locationId, expectedVersion,
+                    "Location is not exists with given id: " + locationId);
+        }
+
+        locationTombstoneRepository.save(new LocationTombstone(locationId));
+        eventPublisher.publishEvent(LocationChangedEvent.deleted(locationId));
         logger.info("deleteLocation: Location with ID {} deleted successfully", locationId);
     }
 
+    @Override
+    @Transactional(timeoutString = ChangeClock.TRANSACTION_TIMEOUT)
+    public LocationDto mergeLocation(Long keptId, Long keptVersion, Long duplicateId, Long duplicateVersion) {
+
+        Location duplicate = locationRepository.findById(duplicateId)
+                .orElseThrow(() -> new ResourceNotFoundException("Location is not exists with given id: " + duplicateId));
+        // Deleted first: the unique (external_ref, city, state) index would reject the reference on both rows.
+        deleteLocation(duplicateId, duplicateVersion);
+
+        if (duplicate.getExternalRef() != null) {
+            int updatedRows = locationRepository.adoptExternalRef(keptId, keptVersion, duplicate.getExternalRef());
+            if (updatedRows == 0) {
+                // Rolls back the delete with it.
+                throw notFoundOrVersionMismatch("mergeLocation", keptId, keptVersion,
+                        "Location is not exists with given id: " + keptId);
+            }
+        }
+
+        Location kept = locationRepository.findById(keptId)
+                .orElseThrow(() -> new ResourceNotFoundException("Location is not exists with given id: " + keptId));
+        logger.info("mergeLocation: Location with ID {} merged into location with ID {}", duplicateId, keptId);
+
+        LocationDto keptDto = LocationMapper.mapToLocationDto(kept);
+        if (duplicate.getExternalRef() != null) {
+            eventPublisher.publishEvent(LocationChangedEvent.updated(keptDto));
+        }
+        return keptDto;
+    }
+
+    @Override
+    @Transactional
+    public LocationChangesDto getLocationChanges(String since, int limit) {
+
+        ChangeCursor cursor = ChangeCursor.parse(since);
+        // Changes newer than the settle window may still be followed by older ones that have not committed yet.
+        LocalDateTime upTo = changeClock.settledUpTo();
+        Pageable window = PageRequest.of(0, limit + 1);
+
+        List<Location> changed = locationRepository.findChangedSince(cursor.changedAt(), cursor.id(), upTo, window);
+        List<LocationTombstone> deleted = locationTombstoneRepository.findDeletedSince(
+                cursor.changedAt(), cursor.id(), upTo, window);
+
+        // Both lists are sorted by (timestamp, id); merge them into a single ordered feed.
+        List<LocationChangeDto> changes = new ArrayList<>(limit);
+        int c = 0;
+        int d = 0;
+        ChangeCursor last = cursor;
+        while (changes.size() < limit && (c < changed.size() || d < deleted.size())) {
+            boolean takeChanged = d >= deleted.size()
+                    || (c < changed.size() && toCursor(changed.get(c)).compareTo(toCursor(deleted.get(d))) < 0);
+            if (takeChanged) {
+                Location location = changed.get(c++);
+                changes.add(new LocationChangeDto(LocationChangeDto.ChangeType.UPSERT, location.getId(),
+                        LocationMapper.mapToLocationDto(location), location.getUpdatedAt()));
+                last = toCursor(location);
+            } else {
+                LocationTombstone tombstone = deleted.get(d++);
+                changes.add(new LocationChangeDto(LocationChangeDto.ChangeType.DELETE, tombstone.getLocationId(),
+                        null, tombstone.getDeletedAt()));
+                last = toCursor(tombstone);
+            }
+        }
+        boolean hasMore = c < changed.size() || d < deleted.size();
+
+        logger.info("getLocationChanges: Returning {} changes after cursor {}", changes.size(), since);
+        return new LocationChangesDto(changes, last.encode(), hasMore);
+    }
+
+    @Override
+    @Transactional(timeoutString = ChangeClock.TRANSACTION_TIMEOUT)
+    public BulkUpsertResultDto upsertLocations(List<LocationUpsertDto> locations) {
+
+        Set<List<String>> keys = new HashSet<>();
+        List<Location> candidates = new ArrayList<>(locations.size());
+        for (LocationUpsertDto upsert : locations) {
+            // The same row cannot be affected twice by one INSERT ... ON CONFLICT statement.
+            if (!keys.add(List.of(upsert.getExternalRef(), upsert.getCity(), upsert.getState()))) {
+                throw new ResourceBadRequestException("Duplicate location in request: externalRef '" + upsert.getExternalRef()
+                        + "', city '" + upsert.getCity() + "', state '" + upsert.getState() + "'");
+            }
+            candidates.add(LocationMapper.mapToLocation(upsert));
+        }
+
+        int inserted = 0;
+        int updated = 0;
+        for (UpsertedLocation written : locationRepository.upsertAll(candidates)) {
+            LocationDto writtenDto = LocationMapper.mapToLocationDto(written.location());
+            if (written.inserted()) {
+                inserted++;
+                eventPublisher.publishEvent(LocationChangedEvent.created(writtenDto));
+            } else {
+                updated++;
+                eventPublisher.publishEvent(LocationChangedEvent.updated(writtenDto));
+            }
+        }
+        int unchanged = candidates.size() - inserted - updated;
+
+        logger.info("upsertLocations: {} inserted, {} updated, {} unchanged", inserted, updated, unchanged);
+        return new BulkUpsertResultDto(inserted, updated, unchanged);
+    }
+
+    @Override
+    public Page<LocationHistoryDto> getLocationHistory(Long locationId, Pageable pageable) {
 
+        Sort sort = pageable.getSort().isSorted()
+                ? pageable.getSort()
+                : Sort.by("changedAt").descending().and(Sort.by("id").descending());
+
+        Pageable sortedPageable = PageRequest.of(
+                pageable.getPageNumber(),
+                pageable.getPageSize(),
+                sort
+        );
+
+        // History is written asynchronously: the latest change may take a moment to appear.
+        Page<LocationHistoryDto> history = locationHistoryRepository.findByLocationId(locationId, sortedPageable)
+                .map(LocationMapper::mapToLocationHistoryDto);
+
+        logger.info("getLocationHistory: Retrieved {} changes of location with ID: {}", history.getTotalElements(), locationId);
+        return history;
+    }
+
+    private RuntimeException notFoundOrVersionMismatch(String operation, Long locationId, Long expectedVersion,
+                                                       String notFoundMessage) {
+        if (expectedVersion != null && locationRepository.existsById(locationId)) {
+            logger.info("{}: Location with ID {} is no longer at version {}", operation, locationId, expectedVersion);
+            return new ResourcePreconditionFailedException(
+                    "Location with id " + locationId + " was modified: it is no longer at version " + expectedVersion);
+        }
+        logger.error("{}: {}", operation, notFoundMessage);
+        return new ResourceNotFoundException(notFoundMessage);
+    }
+
+    /**
+     * Parses a fields parameter into the properties to select, in response order. The id is always selected.
+     */
+    private static List<String> parseFields(String fields) {
+        Set<String> requested = new HashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!LocationRepositoryCustom.PROJECTABLE_FIELDS.contains(name)) {
+                throw new ResourceBadRequestException("Unknown field '" + name + "'. Allowed fields: "
+                        + String.join(", ", LocationRepositoryCustom.PROJECTABLE_FIELDS) + ".");
+            }
+            requested.add(name);
+        }
+        if (requested.isEmpty()) {
+            throw new ResourceBadRequestException("The 'fields' parameter must name at least one field.");
+        }
+
+        List<String> selected = new ArrayList<>(requested.size() + 1);
+        for (String name : LocationRepositoryCustom.PROJECTABLE_FIELDS) {
+            if (name.equals("id") || requested.contains(name)) {
+                selected.add(name);
+            }
+        }
+        return selected;
+    }
+
+    private static ChangeCursor toCursor(Location location) {
+        return new ChangeCursor(location.getUpdatedAt(), location.getId());
+    }
+
+    private static ChangeCursor toCursor(LocationTombstone tombstone) {
+        return new ChangeCursor(tombstone.getDeletedAt(), tombstone.getLocationId());
+    }
+
+    // The same page of different shards holds different locations.
+    private record PageKey(Integer shard, Pageable pageable) {
+    }
 }
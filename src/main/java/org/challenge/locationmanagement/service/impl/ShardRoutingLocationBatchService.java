@@ -0,0 +1,62 @@
+package org.challenge.locationmanagement.service.impl;
+
+import org.challenge.locationmanagement.dto.LocationBatchRequest;
+import org.challenge.locationmanagement.dto.LocationBatchResultDto;
+import org.challenge.locationmanagement.dto.LocationOperationDto;
+import org.challenge.locationmanagement.exception.ResourceBadRequestException;
+import org.challenge.locationmanagement.service.LocationBatchService;
+import org.challenge.locationmanagement.sharding.ShardContext;
+import org.challenge.locationmanagement.sharding.ShardRouter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Runs a batch on the shard its operations belong to. A batch is one transaction, and a
+ * transaction cannot span shards, so batches touching several shards are rejected, as are
+ * updates that would move a location to the shard of another state.
+ */
+@Primary
+@Service
+public class ShardRoutingLocationBatchService implements LocationBatchService {
+
+    private final LocationBatchService locationBatchService;
+    private final ShardRouter shardRouter;
+
+    public ShardRoutingLocationBatchService(@Qualifier("locationBatchServiceImpl") LocationBatchService locationBatchService,
+                                            ShardRouter shardRouter) {
+        this.locationBatchService = locationBatchService;
+        this.shardRouter = shardRouter;
+    }
+
+    @Override
+    public LocationBatchResultDto executeBatch(LocationBatchRequest batchRequest) {
+        if (!shardRouter.isSharded()) {
+            return locationBatchService.executeBatch(batchRequest);
+        }
+
+        Set<Integer> shards = new TreeSet<>();
+        for (LocationOperationDto operation : batchRequest.getOperations()) {
+            if (operation.getType() == LocationOperationDto.Type.CREATE && operation.getLocation() != null) {
+                shards.add(shardRouter.shardForState(operation.getLocation().getState()));
+            } else if (operation.getType() != LocationOperationDto.Type.CREATE && operation.getId() != null) {
+                shards.add(shardRouter.shardForId(operation.getId()));
+                if (operation.getType() == LocationOperationDto.Type.UPDATE && operation.getLocation() != null
+                        && !shardRouter.keepsShard(operation.getId(), operation.getLocation().getState())) {
+                    throw new ResourceBadRequestException("Location with ID " + operation.getId() + " cannot move to state '"
+                            + operation.getLocation().getState() + "', which is kept on another shard. Delete it and create it again.");
+                }
+            }
+        }
+        if (shards.size() > 1) {
+            throw new ResourceBadRequestException("The operations of a batch must all target the same shard, "
+                    + "but these target shards " + shards + ". Split the batch by shard.");
+        }
+
+        int shard = shards.isEmpty() ? 0 : shards.iterator().next();
+        return ShardContext.call(shard, () -> locationBatchService.executeBatch(batchRequest));
+    }
+}
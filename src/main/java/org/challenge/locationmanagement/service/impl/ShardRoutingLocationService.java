@@ -0,0 +1,396 @@
+package org.challenge.locationmanagement.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import org.challenge.locationmanagement.dto.BulkUpsertResultDto;
+import org.challenge.locationmanagement.dto.BulkUpsertShardResultDto;
+import org.challenge.locationmanagement.dto.LocationChangeDto;
+import org.challenge.locationmanagement.dto.LocationChangesDto;
+import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.dto.LocationHistoryDto;
+import org.challenge.locationmanagement.dto.LocationUpsertDto;
+import org.challenge.locationmanagement.exception.ResourceBadRequestException;
+import org.challenge.locationmanagement.mapper.LocationMapper;
+import org.challenge.locationmanagement.readstore.LocationReadStore;
+import org.challenge.locationmanagement.repository.LocationRepositoryCustom;
+import org.challenge.locationmanagement.service.ChangeCursor;
+import org.challenge.locationmanagement.service.LocationService;
+import org.challenge.locationmanagement.sharding.ShardContext;
+import org.challenge.locationmanagement.sharding.ShardRouter;
+import org.challenge.locationmanagement.sharding.ShardingProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Routes location operations to the shard that holds the location, and fans reads that span all
+ * locations out to every shard in parallel, merging the sorted per-shard results.
+ *
+ * Operations on one id go to the shard encoded in the id, creates to the shard of their state.
+ * A page of a sharded listing needs the first offset + size rows of every shard, so deep pages
+ * get more expensive with the page number and are capped at {@link #MAX_SCATTER_ROWS}. Strings are
+ * merged in Java order, which can differ from the database collation for accented or mixed-case
+ * values. The change history is not sharded and is always read from shard 0. The calling thread
+ * queries the first shard itself, and a shared pool queries the others, with as many threads per
+ * shard as the shard has connections; when the pool is exhausted the calling thread queries them
+ * in turn.
+ *
+ * Updates cannot change a location's state to one placed on another shard, since the id names
+ * the shard: such a location has to be deleted and created again. A bulk upsert writes each
+ * shard's locations in a transaction of that shard, so it is not atomic across shards: the result
+ * reports each shard's outcome, and since upserts are idempotent the whole request can be retried.
+ *
+ * With a single shard every call goes straight to the wrapped service, as do listings while the
+ * read store, which holds the locations of every shard, is serving.
+ */
+@Primary
+@Service
+public class ShardRoutingLocationService implements LocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRoutingLocationService.class);
+
+    static final int MAX_SCATTER_ROWS = 10_000;
+
+    private final LocationService locationService;
+    private final ShardRouter shardRouter;
+    private final LocationReadStore locationReadStore;
+    private final ExecutorService scatterExecutor;
+
+    public ShardRoutingLocationService(@Qualifier("locationServiceImpl") LocationService locationService,
+                                       ShardRouter shardRouter,
+                                       LocationReadStore locationReadStore,
+                                       ShardingProperties shardingProperties) {
+        this.locationService = locationService;
+        this.shardRouter = shardRouter;
+        this.locationReadStore = locationReadStore;
+        this.scatterExecutor = shardRouter.isSharded()
+                ? new ThreadPoolExecutor(0, shardingProperties.getMaxPoolSize() * (shardRouter.shardCount() - 1), 60, TimeUnit.SECONDS,
+                        new SynchronousQueue<>(), daemon(), new ThreadPoolExecutor.CallerRunsPolicy())
+                : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scatterExecutor != null) {
+            scatterExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public LocationDto createLocation(LocationDto locationDto) {
+        return ShardContext.call(shardRouter.shardForState(locationDto.getState()),
+                () -> locationService.createLocation(locationDto));
+    }
+
+    @Override
+    public LocationDto getLocationById(Long locationId) {
+        return ShardContext.call(shardRouter.shardForId(locationId), () -> locationService.getLocationById(locationId));
+    }
+
+    @Override
+    public Map<String, Object> getLocationById(Long locationId, String fields) {
+        return ShardContext.call(shardRouter.shardForId(locationId), () -> locationService.getLocationById(locationId, fields));
+    }
+
+    @Override
+    public Page<LocationDto> getAllLocations(Pageable pageable) {
+        if (!shardRouter.isSharded() || servedFromReadStore(pageable)) {
+            return locationService.getAllLocations(pageable);
+        }
+
+        Sort sort = mergeSort(pageable);
+        Pageable shardPageable = PageRequest.of(0, scatterRows(pageable), sort);
+        List<Page<LocationDto>> pages = scatter(shard -> locationService.getAllLocations(shardPageable));
+
+        Comparator<LocationDto> order = comparator(sort, LocationMapper::getProperty);
+        return mergePages(pages, order, pageable);
+    }
+
+    @Override
+    public Page<Map<String, Object>> getAllLocations(Pageable pageable, String fields) {
+        if (!shardRouter.isSharded() || servedFromReadStore(pageable)) {
+            return locationService.getAllLocations(pageable, fields);
+        }
+
+        Sort sort = mergeSort(pageable);
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            requested.add(field.trim());
+        }
+        // The merge needs the sort keys of every row, whether or not the caller asked for them.
+        Set<String> selected = new LinkedHashSet<>(requested);
+        sort.forEach(order -> selected.add(order.getProperty()));
+
+        Pageable shardPageable = PageRequest.of(0, scatterRows(pageable), sort);
+        String shardFields = String.join(",", selected);
+        List<Page<Map<String, Object>>> pages = scatter(shard -> locationService.getAllLocations(shardPageable, shardFields));
+
+        Comparator<Map<String, Object>> order = comparator(sort, (row, property) -> row.get(property));
+        Page<Map<String, Object>> page = mergePages(pages, order, pageable);
+        for (Map<String, Object> row : page.getContent()) {
+            row.keySet().removeIf(field -> !field.equals("id") && !requested.contains(field));
+        }
+        return page;
+    }
+
+    @Override
+    public LocationDto updateLocation(Long locationId, LocationDto updatedLocation) {
+        checkKeepsShard(locationId, updatedLocation);
+        return ShardContext.call(shardRouter.shardForId(locationId),
+                () -> locationService.updateLocation(locationId, updatedLocation));
+    }
+
+    @Override
+    public LocationDto updateLocation(Long locationId, LocationDto updatedLocation, Long expectedVersion) {
+        checkKeepsShard(locationId, updatedLocation);
+        return ShardContext.call(shardRouter.shardForId(locationId),
+                () -> locationService.updateLocation(locationId, updatedLocation, expectedVersion));
+    }
+
+    @Override
+    public void deleteLocation(Long locationId) {
+        ShardContext.run(shardRouter.shardForId(locationId), () -> locationService.deleteLocation(locationId));
+    }
+
+    @Override
+    public void deleteLocation(Long locationId, Long expectedVersion) {
+        ShardContext.run(shardRouter.shardForId(locationId), () -> locationService.deleteLocation(locationId, expectedVersion));
+    }
+
+    @Override
+    public LocationDto mergeLocation(Long keptId, Long keptVersion, Long duplicateId, Long duplicateVersion) {
+        int shard = shardRouter.shardForId(keptId);
+        if (shardRouter.shardForId(duplicateId) != shard) {
+            throw new ResourceBadRequestException("Location with ID " + duplicateId + " cannot be merged into location with ID "
+                    + keptId + ", which is kept on another shard.");
+        }
+        return ShardContext.call(shard, () -> locationService.mergeLocation(keptId, keptVersion, duplicateId, duplicateVersion));
+    }
+
+    @Override
+    public LocationChangesDto getLocationChanges(String since, int limit) {
+        if (!shardRouter.isSharded()) {
+            return locationService.getLocationChanges(since, limit);
+        }
+
+        List<LocationChangesDto> feeds = scatter(shard -> locationService.getLocationChanges(since, limit));
+
+        // Each shard returns its first changes after the cursor, so the first 'limit' of all shards are among them.
+        Comparator<LocationChangeDto> order = Comparator.comparing(LocationChangeDto::getChangedAt)
+                .thenComparing(LocationChangeDto::getId);
+        List<LocationChangeDto> merged = mergeSorted(feeds.stream().map(LocationChangesDto::getChanges).toList(), order, limit + 1);
+
+        List<LocationChangeDto> changes = merged.subList(0, Math.min(limit, merged.size()));
+        boolean hasMore = merged.size() > limit || feeds.stream().anyMatch(LocationChangesDto::isHasMore);
+        ChangeCursor next = changes.isEmpty()
+                ? ChangeCursor.parse(since)
+                : new ChangeCursor(changes.get(changes.size() - 1).getChangedAt(), changes.get(changes.size() - 1).getId());
+        return new LocationChangesDto(new ArrayList<>(changes), next.encode(), hasMore);
+    }
+
+    @Override
+    public BulkUpsertResultDto upsertLocations(List<LocationUpsertDto> locations) {
+        if (!shardRouter.isSharded()) {
+            return locationService.upsertLocations(locations);
+        }
+
+        // The state is part of the upsert key, so a location always upserts into the same shard.
+        Map<Integer, List<LocationUpsertDto>> byShard = new TreeMap<>();
+        for (LocationUpsertDto location : locations) {
+            byShard.computeIfAbsent(shardRouter.shardForState(location.getState()), shard -> new ArrayList<>()).add(location);
+        }
+
+        // Each shard commits or rolls back on its own, whatever happens on the others.
+        List<Supplier<ShardUpsert>> upserts = new ArrayList<>();
+        byShard.forEach((shard, shardLocations) -> upserts.add(() -> upsertShard(shard, shardLocations)));
+        List<ShardUpsert> shardUpserts = fork(upserts);
+        if (shardUpserts.stream().allMatch(upsert -> upsert.failure() != null)) {
+            // Nothing was committed: fail as an unsharded upsert would.
+            throw shardUpserts.get(0).failure();
+        }
+
+        List<BulkUpsertShardResultDto> shardResults = new ArrayList<>(shardUpserts.size());
+        int inserted = 0;
+        int updated = 0;
+        int unchanged = 0;
+        for (ShardUpsert upsert : shardUpserts) {
+            shardResults.add(upsert.result());
+            inserted += upsert.result().getInserted();
+            updated += upsert.result().getUpdated();
+            unchanged += upsert.result().getUnchanged();
+        }
+        logger.info("upsertLocations: Upserted {} locations across {} shards", locations.size(), byShard.size());
+        return new BulkUpsertResultDto(inserted, updated, unchanged, shardResults);
+    }
+
+    private ShardUpsert upsertShard(int shard, List<LocationUpsertDto> locations) {
+        try {
+            BulkUpsertResultDto result = ShardContext.call(shard, () -> locationService.upsertLocations(locations));
+            return new ShardUpsert(new BulkUpsertShardResultDto(shard, HttpStatus.OK.value(), result.getInserted(),
+                    result.getUpdated(), result.getUnchanged(), null), null);
+        } catch (RuntimeException e) {
+            logger.warn("upsertShard: Upsert of {} locations on shard {} was rolled back", locations.size(), shard, e);
+            ResponseStatus responseStatus = AnnotatedElementUtils.findMergedAnnotation(e.getClass(), ResponseStatus.class);
+            BulkUpsertShardResultDto result = responseStatus != null
+                    ? new BulkUpsertShardResultDto(shard, responseStatus.code().value(), 0, 0, 0, e.getMessage())
+                    : new BulkUpsertShardResultDto(shard, HttpStatus.INTERNAL_SERVER_ERROR.value(), 0, 0, 0,
+                    "The locations of shard " + shard + " could not be written.");
+            return new ShardUpsert(result, e);
+        }
+    }
+
+    @Override
+    public Page<LocationHistoryDto> getLocationHistory(Long locationId, Pageable pageable) {
+        return locationService.getLocationHistory(locationId, pageable);
+    }
+
+    private boolean servedFromReadStore(Pageable pageable) {
+        return locationReadStore.isServing() && locationReadStore.supports(pageable.getSort());
+    }
+
+    private void checkKeepsShard(Long locationId, LocationDto updatedLocation) {
+        if (!shardRouter.keepsShard(locationId, updatedLocation.getState())) {
+            throw new ResourceBadRequestException("Location with ID " + locationId + " cannot move to state '"
+                    + updatedLocation.getState() + "', which is kept on another shard. Delete it and create it again.");
+        }
+    }
+
+    private <T> List<T> scatter(IntFunction<T> query) {
+        return fork(shardRouter.shards()
+                .<Supplier<T>>mapToObj(shard -> () -> ShardContext.call(shard, () -> query.apply(shard)))
+                .toList());
+    }
+
+    /**
+     * Runs the first task on the calling thread and the others in parallel on the scatter pool.
+     */
+    private <T> List<T> fork(List<Supplier<T>> tasks) {
+        List<CompletableFuture<T>> others = tasks.subList(1, tasks.size()).stream()
+                .map(task -> CompletableFuture.supplyAsync(task, scatterExecutor))
+                .toList();
+        T first;
+        try {
+            first = tasks.get(0).get();
+        } catch (RuntimeException e) {
+            others.forEach(other -> other.cancel(false));
+            throw e;
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        results.add(first);
+        results.addAll(join(others));
+        return results;
+    }
+
+    private static <T> List<T> join(List<CompletableFuture<T>> futures) {
+        try {
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            // Surface the shard's own exception, e.g. a bad request, rather than the wrapper.
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Sort mergeSort(Pageable pageable) {
+        Sort sort = pageable.getSort().isSorted() ? pageable.getSort() : Sort.by("createdAt").ascending();
+        for (Sort.Order order : sort) {
+            if (!LocationRepositoryCustom.PROJECTABLE_FIELDS.contains(order.getProperty())) {
+                throw new ResourceBadRequestException("Cannot sort locations by '" + order.getProperty() + "'.");
+            }
+        }
+        // Ties are broken by id so every shard and the merge agree on one order.
+        return sort.getOrderFor("id") == null ? sort.and(Sort.by("id").ascending()) : sort;
+    }
+
+    private static int scatterRows(Pageable pageable) {
+        long rows = pageable.getOffset() + pageable.getPageSize();
+        if (rows > MAX_SCATTER_ROWS) {
+            throw new ResourceBadRequestException("Only the first " + MAX_SCATTER_ROWS
+                    + " locations can be paged through; use the changes endpoint to read all locations.");
+        }
+        return (int) rows;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Comparator<T> comparator(Sort sort, BiFunction<T, String, Object> property) {
+        Comparator<T> comparator = null;
+        for (Sort.Order order : sort) {
+            // Nulls sort last ascending and first descending, as in PostgreSQL.
+            Comparator<T> next = Comparator.comparing(row -> (Comparable) property.apply(row, order.getProperty()),
+                    Comparator.nullsLast(Comparator.naturalOrder()));
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    private static <T> Page<T> mergePages(List<Page<T>> pages, Comparator<T> order, Pageable pageable) {
+        int end = (int) (pageable.getOffset() + pageable.getPageSize());
+        List<T> merged = mergeSorted(pages.stream().map(Page::getContent).toList(), order, end);
+        List<T> content = merged.subList(Math.min((int) pageable.getOffset(), merged.size()), merged.size());
+        long total = pages.stream().mapToLong(Page::getTotalElements).sum();
+        return new PageImpl<>(new ArrayList<>(content), pageable, total);
+    }
+
+    /**
+     * K-way merge of lists that are each sorted by order, stopping after limit elements.
+     */
+    static <T> List<T> mergeSorted(List<List<T>> sortedLists, Comparator<T> order, int limit) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, sortedLists.size()),
+                (a, b) -> order.compare(sortedLists.get(a[0]).get(a[1]), sortedLists.get(b[0]).get(b[1])));
+        for (int list = 0; list < sortedLists.size(); list++) {
+            if (!sortedLists.get(list).isEmpty()) {
+                heads.add(new int[]{list, 0});
+            }
+        }
+
+        List<T> merged = new ArrayList<>(limit);
+        while (merged.size() < limit && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<T> list = sortedLists.get(head[0]);
+            merged.add(list.get(head[1]));
+            if (head[1] + 1 < list.size()) {
+                heads.add(new int[]{head[0], head[1] + 1});
+            }
+        }
+        return merged;
+    }
+
+    private record ShardUpsert(BulkUpsertShardResultDto result, RuntimeException failure) {
+    }
+
+    private static ThreadFactory daemon() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "location-shard-query-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,44 @@
+package org.challenge.locationmanagement.sharding;
+
+import java.util.function.Supplier;
+
+/**
+ * Shard the current thread works on, read by {@link ShardRoutingDataSource} when a connection is
+ * obtained. It has to be set before a transaction starts: a transaction keeps the connection, and
+ * so the shard, it began with.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * @return the current shard, or null outside of {@link #call}
+     */
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    public static <T> T call(int shard, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public static void run(int shard, Runnable action) {
+        call(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
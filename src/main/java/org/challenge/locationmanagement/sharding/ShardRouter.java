@@ -0,0 +1,70 @@
+package org.challenge.locationmanagement.sharding;
+
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * Maps locations to shards.
+ *
+ * New locations are placed by state, so locations of a state share a shard, and every shard
+ * allocates ids from its own residue class: shard s of N hands out s + 1, s + 1 + N, s + 1 + 2N...
+ * The id alone therefore tells which shard holds a location. With a single shard every location
+ * maps to shard 0.
+ */
+public class ShardRouter {
+
+    private final int shardCount;
+
+    public ShardRouter(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shardCount = shardCount;
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    public IntStream shards() {
+        return IntStream.range(0, shardCount);
+    }
+
+    public int shardForId(long locationId) {
+        return Math.floorMod(locationId - 1, shardCount);
+    }
+
+    public int shardForState(String state) {
+        if (state == null) {
+            return 0;
+        }
+        // String.hashCode is specified, so placement is stable across restarts and JVMs.
+        int hash = state.trim().toLowerCase(Locale.ROOT).hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, shardCount);
+    }
+
+    /**
+     * @return whether the location with this id can take this state: ids name their shard, so a
+     * location cannot move to the shard of another state
+     */
+    public boolean keepsShard(long locationId, String state) {
+        return shardForId(locationId) == shardForState(state);
+    }
+
+    /**
+     * @return the smallest id after afterId that belongs to the given shard
+     */
+    public long nextIdOnShard(long afterId, int shard) {
+        long candidate = afterId + 1;
+        return candidate + Math.floorMod(shard - shardForId(candidate), shardCount);
+    }
+}
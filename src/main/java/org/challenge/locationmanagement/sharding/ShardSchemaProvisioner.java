@@ -0,0 +1,67 @@
+package org.challenge.locationmanagement.sharding;
+
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Brings a shard database to the current schema and, the first time, sets up its id allocation.
+ *
+ * The locations identity column of shard s of N is restarted at its first free id in the residue
+ * class of s and incremented by N, so shards never hand out the same id. The assignment is recorded
+ * in shard_metadata; a database that was provisioned for another position or shard count is refused
+ * rather than silently re-numbered.
+ */
+class ShardSchemaProvisioner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardSchemaProvisioner.class);
+
+    private final ShardRouter shardRouter;
+
+    ShardSchemaProvisioner(ShardRouter shardRouter) {
+        this.shardRouter = shardRouter;
+    }
+
+    void provision(DataSource dataSource, int shard) {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        int shardCount = shardRouter.shardCount();
+        List<Map<String, Object>> provisioned = jdbcTemplate.queryForList("SELECT shard_index, shard_count FROM shard_metadata");
+        if (!provisioned.isEmpty()) {
+            int index = ((Number) provisioned.get(0).get("shard_index")).intValue();
+            int count = ((Number) provisioned.get(0).get("shard_count")).intValue();
+            if (index != shard || count != shardCount) {
+                throw new IllegalStateException("Database configured as shard " + shard + " of " + shardCount
+                        + " was provisioned as shard " + index + " of " + count + "; re-sharding is not supported");
+            }
+            return;
+        }
+
+        Long misplaced = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM locations WHERE MOD(id - 1, ?) <> ?", Long.class, shardCount, shard);
+        if (misplaced != null && misplaced > 0) {
+            throw new IllegalStateException("Database configured as shard " + shard + " of " + shardCount + " holds "
+                    + misplaced + " locations whose ids belong to other shards; move them before enabling sharding");
+        }
+
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM locations", Long.class);
+        long firstId = shardRouter.nextIdOnShard(maxId == null ? 0 : maxId, shard);
+        jdbcTemplate.execute("ALTER TABLE locations ALTER COLUMN id SET INCREMENT BY " + shardCount);
+        jdbcTemplate.execute("ALTER TABLE locations ALTER COLUMN id RESTART WITH " + firstId);
+        jdbcTemplate.update("INSERT INTO shard_metadata (shard_index, shard_count) VALUES (?, ?)", shard, shardCount);
+
+        logger.info("provision: Shard {} of {} allocates location ids from {} in steps of {}", shard, shardCount, firstId, shardCount);
+    }
+}
@@ -0,0 +1,61 @@
+package org.challenge.locationmanagement.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sets up location sharding when location.sharding.enabled is true.
+ *
+ * Each configured shard gets its own connection pool and is migrated on startup; the application
+ * then sees a single routing DataSource. The {@link ShardRouter} is always available and reports a
+ * single shard when sharding is disabled.
+ */
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    @Bean
+    public ShardRouter shardRouter(ShardingProperties shardingProperties) {
+        return new ShardRouter(shardingProperties.isEnabled() ? shardingProperties.getShards().size() : 1);
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "location.sharding.enabled", havingValue = "true")
+    public DataSource shardRoutingDataSource(ShardingProperties shardingProperties,
+                                             ShardRouter shardRouter,
+                                             @Value("${location.schema.migrate-on-startup:true}") boolean migrateOnStartup) {
+        if (shardingProperties.getShards().isEmpty()) {
+            throw new IllegalStateException("location.sharding.enabled requires at least one location.sharding.shards entry");
+        }
+
+        ShardSchemaProvisioner provisioner = new ShardSchemaProvisioner(shardRouter);
+        List<DataSource> shards = new ArrayList<>();
+        for (int shard = 0; shard < shardingProperties.getShards().size(); shard++) {
+            ShardingProperties.Shard properties = shardingProperties.getShards().get(shard);
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(properties.getUrl())
+                    .username(properties.getUsername())
+                    .password(properties.getPassword())
+                    .build();
+            dataSource.setPoolName("location-shard-" + shard);
+            dataSource.setMaximumPoolSize(shardingProperties.getMaxPoolSize());
+            if (migrateOnStartup) {
+                provisioner.provision(dataSource, shard);
+            }
+            shards.add(dataSource);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+}
@@ -0,0 +1,33 @@
+package org.challenge.locationmanagement.sharding;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data sources of the location shards, in shard order. The order must never change once
+ * locations have been written: ids encode the index of their shard.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "location.sharding")
+public class ShardingProperties {
+
+    private boolean enabled;
+
+    // Connections of each shard's pool; also bounds the parallel queries sent to a shard.
+    private int maxPoolSize = 10;
+
+    private List<Shard> shards = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
@@ -0,0 +1,9 @@
+CREATE TABLE locations (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name         VARCHAR(255),
+    neighborhood VARCHAR(255),
+    city         VARCHAR(255),
+    state        VARCHAR(255),
+    created_at   TIMESTAMP(6),
+    updated_at   TIMESTAMP(6)
+);
@@ -0,0 +1,9 @@
+-- Databases created by ddl-auto=update may already contain these objects.
+CREATE INDEX IF NOT EXISTS idx_locations_updated_at_id ON locations (updated_at, id);
+
+CREATE TABLE IF NOT EXISTS location_tombstones (
+    location_id BIGINT       NOT NULL PRIMARY KEY,
+    deleted_at  TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_location_tombstones_deleted_at_id ON location_tombstones (deleted_at, location_id);
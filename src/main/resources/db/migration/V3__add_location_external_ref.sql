@@ -0,0 +1,4 @@
+-- Natural key used by the bulk upsert endpoint (ON CONFLICT target).
+ALTER TABLE locations ADD COLUMN IF NOT EXISTS external_ref VARCHAR(255);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_locations_external_ref_city_state ON locations (external_ref, city, state);
@@ -0,0 +1,2 @@
+-- Optimistic locking version, exposed to clients as the ETag.
+ALTER TABLE locations ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
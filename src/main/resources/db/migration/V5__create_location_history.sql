@@ -0,0 +1,16 @@
+-- Append-only change history, written asynchronously after commit.
+CREATE TABLE IF NOT EXISTS location_history (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    event_id     VARCHAR(36)  NOT NULL,
+    location_id  BIGINT       NOT NULL,
+    change_type  VARCHAR(16)  NOT NULL,
+    name         VARCHAR(255),
+    neighborhood VARCHAR(255),
+    city         VARCHAR(255),
+    state        VARCHAR(255),
+    version      BIGINT,
+    changed_at   TIMESTAMP(6) NOT NULL,
+    CONSTRAINT uk_location_history_event_id UNIQUE (event_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_location_history_location_changed_at ON location_history (location_id, changed_at);
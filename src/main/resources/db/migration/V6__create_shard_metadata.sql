@@ -0,0 +1,5 @@
+-- Identifies the shard a database was provisioned as; empty on unsharded databases.
+CREATE TABLE IF NOT EXISTS shard_metadata (
+    shard_index INT NOT NULL,
+    shard_count INT NOT NULL
+);
@@ -0,0 +1,12 @@
+-- Timestamps used to be written in the application server's local time and are now written in UTC. Existing values
+-- are read as local time of the session, which the JDBC driver sets to the time zone of the JVM, so this migration
+-- must run with the time zone the previous version ran in.
+UPDATE locations
+SET created_at = CAST(created_at AS TIMESTAMP WITH TIME ZONE) AT TIME ZONE 'UTC',
+    updated_at = CAST(updated_at AS TIMESTAMP WITH TIME ZONE) AT TIME ZONE 'UTC';
+
+UPDATE location_tombstones
+SET deleted_at = CAST(deleted_at AS TIMESTAMP WITH TIME ZONE) AT TIME ZONE 'UTC';
+
+UPDATE location_history
+SET changed_at = CAST(changed_at AS TIMESTAMP WITH TIME ZONE) AT TIME ZONE 'UTC';
@@ -0,0 +1,72 @@
+package org.challenge.locationmanagement;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Startup-time check for the fast-startup build (mvn verify -Pfast-startup).
+ *
+ * Starts the extracted application jar with the AOT-generated context and the AppCDS archive,
+ * stopping right after the context refresh, and fails the build if it takes longer than
+ * 'fastStartup.maxMillis'.
+ */
+@EnabledIfSystemProperty(named = "fastStartup.jar", matches = ".+")
+class FastStartupIT {
+
+    private static final int OUTPUT_TAIL_LINES = 40;
+
+    @Test
+    @DisplayName("Application context should refresh within the startup budget")
+    void startsWithinBudget() throws Exception {
+        Path jar = Path.of(System.getProperty("fastStartup.jar"));
+        Path archive = Path.of(System.getProperty("fastStartup.archive"));
+        long maxMillis = Long.parseLong(System.getProperty("fastStartup.maxMillis"));
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+        Process process = new ProcessBuilder(List.of(
+                java,
+                "-XX:SharedArchiveFile=" + archive,
+                "-Xlog:cds=off",
+                "-Dspring.aot.enabled=true",
+                "-Dspring.context.exit=onRefresh",
+                "-jar", jar.toString(),
+                "--spring.profiles.active=fast-startup",
+                "--location.schema.migrate-on-startup=false",
+                "--logging.file.name="))
+                .directory(jar.getParent().toFile())
+                .redirectErrorStream(true)
+                .start();
+        long started = System.nanoTime();
+
+        // Keep draining the output so the child never blocks on a full pipe; remember the tail for diagnostics.
+        Deque<String> tail = new ArrayDeque<>();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (tail.size() == OUTPUT_TAIL_LINES) {
+                    tail.removeFirst();
+                }
+                tail.addLast(line);
+            }
+        }
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS), "The application did not exit after the context refresh");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertEquals(0, process.exitValue(), () -> "The application failed to start after " + elapsedMillis + " ms:\n"
+                + String.join("\n", tail));
+        assertTrue(elapsedMillis <= maxMillis,
+                "Startup took " + elapsedMillis + " ms, over the budget of " + maxMillis + " ms");
+    }
+}
@@ -0,0 +1,47 @@
+package org.challenge.locationmanagement.concurrency;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    @DisplayName("Should reject requests once the limit is reached")
+    void tryAcquire_rejectsOverLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("read", 2, 1, 10);
+
+        AdaptiveConcurrencyLimiter.Permit first = limiter.tryAcquire();
+        AdaptiveConcurrencyLimiter.Permit second = limiter.tryAcquire();
+
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejectedCount());
+
+        first.releaseIgnoringLatency();
+        assertNotNull(limiter.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("Should lower the limit when latency rises and raise it while latency is steady")
+    void onSample_followsLatency() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("read", 20, 4, 100);
+        long baseline = TimeUnit.MILLISECONDS.toNanos(10);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(baseline, limiter.getLimit());
+        }
+        int steadyLimit = limiter.getLimit();
+        assertTrue(steadyLimit > 20);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(baseline * 10, limiter.getLimit());
+        }
+        assertTrue(limiter.getLimit() < steadyLimit);
+        assertTrue(limiter.getLimit() >= 4);
+    }
+}
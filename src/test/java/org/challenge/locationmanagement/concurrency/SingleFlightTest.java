@@ -0,0 +1,96 @@
+package org.challenge.locationmanagement.concurrency;
+
+import org.challenge.locationmanagement.exception.ResourceUnavailableException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    @DisplayName("Should share one load among concurrent callers of the same key")
+    void execute_coalescesConcurrentCalls() throws Exception {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(5));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            futures.add(executor.submit(() -> singleFlight.execute(1L, () -> {
+                loads.incrementAndGet();
+                await(release);
+                return "location-1";
+            })));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        for (Future<String> future : futures) {
+            assertEquals("location-1", future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(0, singleFlight.inFlightCount());
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should propagate the load failure to every waiting caller and then forget it")
+    void execute_propagatesFailure() throws Exception {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executor.submit(() -> singleFlight.execute(1L, () -> {
+                await(release);
+                throw new IllegalStateException("database unavailable");
+            })));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        for (Future<String> future : futures) {
+            ExecutionException thrown = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, thrown.getCause());
+        }
+        assertEquals("recovered", singleFlight.execute(1L, () -> "recovered"));
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should time out followers of a stuck load")
+    void execute_timesOutFollowers() throws Exception {
+        SingleFlight<Long, String> singleFlight = new SingleFlight<>(Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute(1L, () -> {
+            await(release);
+            return "location-1";
+        }));
+        Thread.sleep(50);
+
+        assertThrows(ResourceUnavailableException.class, () -> singleFlight.execute(1L, () -> "location-1"));
+
+        release.countDown();
+        assertEquals("location-1", leader.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
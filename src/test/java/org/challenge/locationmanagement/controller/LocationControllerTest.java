@@ -37,7 +37,9 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 
@@ -153,6 +155,30 @@ class LocationControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.content[1].name").value("Name2"));
     }
 
+    @Test
+    @DisplayName("Should return only the requested fields when 'fields' is given")
+    void getAllLocations_withFields() throws Exception {
+        // Arrange
+        Pageable pageable = PageRequest.of(0, 10);
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", 1L);
+        row.put("name", "Name1");
+        Page<Map<String, Object>> locationPage = new PageImpl<>(List.of(row), pageable, 1);
+
+        when(locationService.getAllLocations(pageable, "name")).thenReturn(locationPage);
+
+        // Act & Assert
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/locations")
+                        .param("page", "0")
+                        .param("size", "10")
+                        .param("fields", "name")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].id").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].name").value("Name1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].city").doesNotExist());
+    }
+
     @Test
     @DisplayName("Should update location successfully")
     void updateLocation_success() throws Exception {
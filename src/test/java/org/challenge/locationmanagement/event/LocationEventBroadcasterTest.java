@@ -0,0 +1,257 @@
+package org.challenge.locationmanagement.event;
+
+import org.challenge.locationmanagement.dto.LocationDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocationEventBroadcasterTest {
+
+    private static final Pattern ID = Pattern.compile("^id:(\\S+)$", Pattern.MULTILINE);
+    private static final Pattern NAME = Pattern.compile("^event:(\\S+)$", Pattern.MULTILINE);
+
+    private final BlockingQueue<RecordingEmitter> nextEmitters = new LinkedBlockingQueue<>();
+    private final LocationEventBroadcaster broadcaster = new LocationEventBroadcaster(2, () -> {
+        RecordingEmitter emitter = nextEmitters.poll();
+        return emitter != null ? emitter : new RecordingEmitter();
+    });
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should replay the events after the Last-Event-ID to a reconnecting subscriber")
+    void subscribe_replaysMissedEvents() throws Exception {
+        // Arrange
+        RecordingEmitter first = subscribe(null);
+        publish(1L);
+        String firstId = first.awaitEvents(1).get(0).id();
+        publish(2L);
+        publish(3L);
+
+        // Act
+        RecordingEmitter reconnected = subscribe(firstId);
+
+        // Assert
+        List<Sent> replayed = reconnected.awaitEvents(2);
+        assertEquals("CREATED", replayed.get(0).name());
+        assertTrue(replayed.get(0).data().contains("locationId=2"));
+        assertTrue(replayed.get(1).data().contains("locationId=3"));
+        assertEquals(firstId.replaceFirst("-1$", "-3"), replayed.get(1).id());
+    }
+
+    @Test
+    @DisplayName("Should send a reset event when the Last-Event-ID has left the replay buffer")
+    void subscribe_sendsResetWhenTooFarBehind() throws Exception {
+        // Arrange
+        RecordingEmitter first = subscribe(null);
+        publish(1L);
+        String firstId = first.awaitEvents(1).get(0).id();
+        for (long id = 2; id <= 1100; id++) {
+            publish(id);
+        }
+
+        // Act
+        RecordingEmitter reconnected = subscribe(firstId);
+
+        // Assert
+        Sent reset = reconnected.awaitEvents(1).get(0);
+        assertEquals("reset", reset.name());
+        assertTrue(reset.data().contains("resync required"));
+    }
+
+    @Test
+    @DisplayName("Should send a reset event for an id handed out by another process")
+    void subscribe_sendsResetForUnknownId() throws Exception {
+        // Arrange
+        publish(1L);
+
+        // Act
+        RecordingEmitter reconnected = subscribe("stale-1");
+
+        // Assert
+        assertEquals("reset", reconnected.awaitEvents(1).get(0).name());
+    }
+
+    @Test
+    @DisplayName("Should disconnect a subscriber whose queue overflows without holding up the others")
+    void onLocationChanged_disconnectsOverflowingSubscriber() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter stalled = subscribe(null, new RecordingEmitter(release));
+        RecordingEmitter healthy = subscribe(null);
+
+        // Act
+        publish(1L);
+        stalled.awaitSendStarted();
+        // One event is in the stalled write, the queue holds 256 more, the next one overflows it.
+        for (long id = 2; id <= 258; id++) {
+            publish(id);
+            if (id % 128 == 0) {
+                healthy.awaitEvents((int) id);
+            }
+        }
+
+        // Assert
+        assertEquals(1, broadcaster.getSubscriberCount());
+        assertEquals(258, healthy.awaitEvents(258).size());
+        assertFalse(stalled.completed.await(100, TimeUnit.MILLISECONDS), "completed while its write was in progress");
+        release.countDown();
+        assertTrue(stalled.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, stalled.events().size());
+    }
+
+    @Test
+    @DisplayName("Should stream the changes of a transaction once it commits")
+    void onLocationChanged_streamsAfterCommit() throws Exception {
+        // Arrange
+        RecordingEmitter subscriber = subscribe(null);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            publish(1L);
+            publish(2L);
+            assertTrue(subscriber.events().isEmpty());
+
+            // Act
+            commit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Assert
+        List<Sent> events = subscriber.awaitEvents(2);
+        assertTrue(events.get(0).data().contains("locationId=1"));
+        assertTrue(events.get(1).data().contains("locationId=2"));
+    }
+
+    @Test
+    @DisplayName("Should stream a single reset event for a transaction that changed many locations")
+    void onLocationChanged_streamsResetForLargeTransaction() throws Exception {
+        // Arrange
+        RecordingEmitter subscriber = subscribe(null);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            for (long id = 1; id <= 1000; id++) {
+                publish(id);
+            }
+
+            // Act
+            commit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        publish(1001L);
+
+        // Assert
+        List<Sent> events = subscriber.awaitEvents(2);
+        assertEquals("reset", events.get(0).name());
+        assertTrue(events.get(1).data().contains("locationId=1001"));
+        assertEquals(1, broadcaster.getSubscriberCount());
+    }
+
+    private RecordingEmitter subscribe(String lastEventId) {
+        return subscribe(lastEventId, new RecordingEmitter());
+    }
+
+    private RecordingEmitter subscribe(String lastEventId, RecordingEmitter emitter) {
+        nextEmitters.add(emitter);
+        assertSame(emitter, broadcaster.subscribe(lastEventId));
+        return emitter;
+    }
+
+    private void publish(Long id) {
+        broadcaster.onLocationChanged(LocationChangedEvent.created(
+                new LocationDto(id, "Name", "Neighborhood", "City", "State", null, null)));
+    }
+
+    private static void commit() {
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    private record Sent(String id, String name, String data) {
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<Sent> events = new ArrayList<>();
+        private final CountDownLatch release;
+        private final CountDownLatch sendStarted = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        RecordingEmitter() {
+            this(new CountDownLatch(0));
+        }
+
+        RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            StringBuilder text = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                text.append(part.getData());
+            }
+            if (text.toString().startsWith(":")) {
+                return; // heartbeat
+            }
+            sendStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (events) {
+                events.add(new Sent(group(ID, text), group(NAME, text), text.toString()));
+                events.notifyAll();
+            }
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+        }
+
+        void awaitSendStarted() throws InterruptedException {
+            assertTrue(sendStarted.await(5, TimeUnit.SECONDS));
+        }
+
+        List<Sent> awaitEvents(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            synchronized (events) {
+                while (events.size() < count) {
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    assertTrue(remaining > 0, "timed out waiting for " + count + " events, got " + events.size());
+                    events.wait(remaining);
+                }
+                return new ArrayList<>(events);
+            }
+        }
+
+        List<Sent> events() {
+            synchronized (events) {
+                return new ArrayList<>(events);
+            }
+        }
+
+        private static String group(Pattern pattern, CharSequence text) {
+            Matcher matcher = pattern.matcher(text);
+            return matcher.find() ? matcher.group(1) : null;
+        }
+    }
+}
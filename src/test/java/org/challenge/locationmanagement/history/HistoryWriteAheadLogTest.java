@@ -0,0 +1,88 @@
+package org.challenge.locationmanagement.history;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryWriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should read appended records in order until they are acknowledged")
+    void read_returnsUnacknowledgedRecords() throws Exception {
+        try (HistoryWriteAheadLog log = new HistoryWriteAheadLog(directory, 1024, Duration.ofMillis(10))) {
+            log.append("first");
+            log.append("second");
+            log.append("third");
+
+            List<HistoryWriteAheadLog.Entry> batch = log.read(2);
+            assertEquals(List.of("first", "second"), batch.stream().map(HistoryWriteAheadLog.Entry::record).toList());
+            // Reading does not consume.
+            assertEquals(2, log.read(2).size());
+
+            log.acknowledge(batch.get(1).endOffset());
+            List<HistoryWriteAheadLog.Entry> rest = log.read(10);
+            assertEquals(List.of("third"), rest.stream().map(HistoryWriteAheadLog.Entry::record).toList());
+
+            log.acknowledge(rest.get(0).endOffset());
+            assertTrue(log.read(10).isEmpty());
+            assertEquals(0, log.backlogBytes());
+            assertEquals(0, Files.size(directory.resolve(HistoryWriteAheadLog.LOG_FILE)));
+        }
+    }
+
+    @Test
+    @DisplayName("Should replay unacknowledged records after reopening")
+    void open_replaysFromCheckpoint() throws Exception {
+        try (HistoryWriteAheadLog log = new HistoryWriteAheadLog(directory, 1024, Duration.ofMillis(10))) {
+            log.append("stored");
+            log.append("pending");
+            log.acknowledge(log.read(1).get(0).endOffset());
+        }
+
+        try (HistoryWriteAheadLog log = new HistoryWriteAheadLog(directory, 1024, Duration.ofMillis(10))) {
+            assertEquals(List.of("pending"), log.read(10).stream().map(HistoryWriteAheadLog.Entry::record).toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Should discard a record torn by a crash in the middle of an append")
+    void open_discardsIncompleteRecord() throws Exception {
+        try (HistoryWriteAheadLog log = new HistoryWriteAheadLog(directory, 1024, Duration.ofMillis(10))) {
+            log.append("complete");
+        }
+        Files.write(directory.resolve(HistoryWriteAheadLog.LOG_FILE), "{\"torn".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (HistoryWriteAheadLog log = new HistoryWriteAheadLog(directory, 1024, Duration.ofMillis(10))) {
+            log.append("next");
+            assertEquals(List.of("complete", "next"), log.read(10).stream().map(HistoryWriteAheadLog.Entry::record).toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Should hold back appends for at most the wait bound while the backlog is over its limit")
+    void append_appliesBoundedBackpressure() throws Exception {
+        try (HistoryWriteAheadLog log = new HistoryWriteAheadLog(directory, 8, Duration.ofMillis(200))) {
+            log.append("0123456789");
+
+            long started = System.nanoTime();
+            log.append("over the limit");
+            long waitedMillis = (System.nanoTime() - started) / 1_000_000;
+
+            assertTrue(waitedMillis >= 150, "waited " + waitedMillis + " ms");
+            assertEquals(2, log.read(10).size());
+        }
+    }
+}
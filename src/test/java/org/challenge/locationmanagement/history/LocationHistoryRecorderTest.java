@@ -0,0 +1,129 @@
+package org.challenge.locationmanagement.history;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.event.LocationChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LocationHistoryRecorderTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private LocationHistoryRecorder recorder;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        if (recorder != null) {
+            recorder.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Should log the changes of a transaction once it commits and write them to the table")
+    void onLocationChanged_logsCommittedChanges() throws Exception {
+        // Arrange
+        recorder = recorder(directory);
+        TransactionSynchronizationManager.initSynchronization();
+        recorder.onLocationChanged(LocationChangedEvent.updated(location(1L)));
+        recorder.onLocationChanged(LocationChangedEvent.deleted(2L));
+
+        // Act
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        int flushed = recorder.flush();
+
+        // Assert
+        assertEquals(2, flushed);
+        List<Object[]> rows = insertedRows();
+        assertEquals(1L, rows.get(0)[1]);
+        assertEquals("UPDATED", rows.get(0)[2]);
+        assertEquals(2L, rows.get(1)[1]);
+        assertEquals("DELETED", rows.get(1)[2]);
+    }
+
+    @Test
+    @DisplayName("Should not record the changes of a rolled back transaction")
+    void onLocationChanged_ignoresRolledBackChanges() throws Exception {
+        // Arrange
+        recorder = recorder(directory);
+        TransactionSynchronizationManager.initSynchronization();
+        recorder.onLocationChanged(LocationChangedEvent.updated(location(1L)));
+
+        // Act
+        TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // Assert
+        assertFalse(Files.exists(directory.resolve(HistoryWriteAheadLog.LOG_FILE)));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("Should insert the changes directly when the history log cannot be written")
+    void onLocationChanged_insertsDirectlyWithoutLog() throws Exception {
+        // Arrange
+        Path notADirectory = Files.createFile(directory.resolve("history"));
+        recorder = recorder(notADirectory);
+
+        // Act
+        recorder.onLocationChanged(LocationChangedEvent.created(location(1L)));
+
+        // Assert
+        List<Object[]> rows = insertedRows();
+        assertEquals(1, rows.size());
+        assertEquals("CREATED", rows.get(0)[2]);
+    }
+
+    private LocationHistoryRecorder recorder(Path walDirectory) {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        return new LocationHistoryRecorder(jdbcTemplate, transactionManager, objectMapper, new SimpleMeterRegistry(),
+                true, walDirectory.toString(), 100, 1024 * 1024);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> insertedRows() {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture(), any(int[].class));
+        return rows.getValue();
+    }
+
+    private static LocationDto location(Long id) {
+        return new LocationDto(id, "Name", "Neighborhood", "City", "State",
+                LocalDateTime.of(2024, 1, 1, 12, 0), LocalDateTime.of(2024, 1, 1, 12, 0));
+    }
+}
@@ -0,0 +1,161 @@
+package org.challenge.locationmanagement.idempotency;
+
+import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.exception.ResourceBadRequestException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyStoreTest {
+
+    private final IdempotencyStore idempotencyStore = new IdempotencyStore(2, Duration.ofHours(1), Duration.ofSeconds(5));
+
+    @Test
+    @DisplayName("Should replay the original result for a retried key")
+    void execute_replaysResult() {
+        // Arrange
+        LocationDto request = new LocationDto(null, "Name", "Neighborhood", "City", "State", null, null);
+        AtomicInteger inserts = new AtomicInteger();
+
+        // Act
+        IdempotencyStore.Result first = idempotencyStore.execute("key-1", request, () -> created(inserts.incrementAndGet()));
+        IdempotencyStore.Result retry = idempotencyStore.execute("key-1", request, () -> created(inserts.incrementAndGet()));
+
+        // Assert
+        assertFalse(first.replayed());
+        assertTrue(retry.replayed());
+        assertSame(first.location(), retry.location());
+        assertEquals(1, inserts.get());
+    }
+
+    @Test
+    @DisplayName("Should coalesce concurrent requests with the same key onto a single insert")
+    void execute_coalescesConcurrentRequests() throws Exception {
+        // Arrange
+        LocationDto request = new LocationDto(null, "Name", "Neighborhood", "City", "State", null, null);
+        AtomicInteger inserts = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // Act
+        List<Future<IdempotencyStore.Result>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> idempotencyStore.execute("key-1", request, () -> {
+                await(release);
+                return created(inserts.incrementAndGet());
+            })));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        // Assert
+        Long id = null;
+        for (Future<IdempotencyStore.Result> future : futures) {
+            Long resultId = future.get(5, TimeUnit.SECONDS).location().getId();
+            id = id == null ? resultId : id;
+            assertEquals(id, resultId);
+        }
+        assertEquals(1, inserts.get());
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should forget failed requests and reject a key reused with another body")
+    void execute_failureAndMismatch() {
+        // Arrange
+        LocationDto request = new LocationDto(null, "Name", "Neighborhood", "City", "State", null, null);
+        LocationDto otherRequest = new LocationDto(null, "Other", "Neighborhood", "City", "State", null, null);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> idempotencyStore.execute("key-1", request, () -> {
+            throw new IllegalStateException("database unavailable");
+        }));
+        IdempotencyStore.Result retry = idempotencyStore.execute("key-1", request, () -> created(1));
+        assertFalse(retry.replayed());
+
+        assertThrows(ResourceBadRequestException.class,
+                () -> idempotencyStore.execute("key-1", otherRequest, () -> created(2)));
+    }
+
+    @Test
+    @DisplayName("Should never hold more entries than its capacity")
+    void execute_boundedCapacity() {
+        LocationDto request = new LocationDto(null, "Name", "Neighborhood", "City", "State", null, null);
+
+        for (int i = 0; i < 10; i++) {
+            long id = i;
+            idempotencyStore.execute("key-" + i, request, () -> created(id));
+        }
+
+        assertEquals(2, idempotencyStore.size());
+    }
+
+    @Test
+    @DisplayName("Should not keep failed requests queued for eviction")
+    void execute_failuresLeaveNothingBehind() {
+        // Arrange
+        LocationDto request = new LocationDto(null, "Name", "Neighborhood", "City", "State", null, null);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            assertThrows(IllegalStateException.class, () -> idempotencyStore.execute("key-1", request, () -> {
+                throw new IllegalStateException("database unavailable");
+            }));
+        }
+
+        // Assert
+        assertEquals(0, idempotencyStore.size());
+        assertEquals(0, idempotencyStore.queuedSize());
+    }
+
+    @Test
+    @DisplayName("Should not evict a request that is still in flight to make room")
+    void execute_keepsInFlightEntries() throws Exception {
+        // Arrange
+        LocationDto request = new LocationDto(null, "Name", "Neighborhood", "City", "State", null, null);
+        AtomicInteger inserts = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<IdempotencyStore.Result> inFlight = executor.submit(() -> idempotencyStore.execute("slow", request, () -> {
+            started.countDown();
+            await(release);
+            return created(inserts.incrementAndGet());
+        }));
+        started.await();
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            long id = 100 + i;
+            idempotencyStore.execute("key-" + i, request, () -> created(id));
+        }
+        release.countDown();
+        inFlight.get(5, TimeUnit.SECONDS);
+        IdempotencyStore.Result retry = idempotencyStore.execute("slow", request, () -> created(inserts.incrementAndGet()));
+
+        // Assert
+        assertTrue(retry.replayed());
+        assertEquals(1, inserts.get());
+        executor.shutdown();
+    }
+
+    private static LocationDto created(long id) {
+        return new LocationDto(id, "Name", "Neighborhood", "City", "State", LocalDateTime.now(), LocalDateTime.now());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
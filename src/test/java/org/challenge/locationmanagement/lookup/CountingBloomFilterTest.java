@@ -0,0 +1,54 @@
+package org.challenge.locationmanagement.lookup;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountingBloomFilterTest {
+
+    @Test
+    @DisplayName("Should never report an added id as absent and keep false positives near the configured rate")
+    void mightContain_noFalseNegatives() {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (long id = 1; id <= 10_000; id++) {
+            filter.add(id);
+        }
+
+        for (long id = 1; id <= 10_000; id++) {
+            assertTrue(filter.mightContain(id));
+        }
+
+        int falsePositives = 0;
+        for (long id = 20_001; id <= 30_000; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+    @Test
+    @DisplayName("Should forget removed ids without affecting the remaining ones")
+    void remove_keepsOtherIds() {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (long id = 1; id <= 10_000; id++) {
+            filter.add(id);
+        }
+
+        for (long id = 1; id <= 5_000; id++) {
+            filter.remove(id);
+        }
+
+        for (long id = 5_001; id <= 10_000; id++) {
+            assertTrue(filter.mightContain(id));
+        }
+        int stillPresent = 0;
+        for (long id = 1; id <= 5_000; id++) {
+            if (filter.mightContain(id)) {
+                stillPresent++;
+            }
+        }
+        assertTrue(stillPresent < 150, "removed ids still reported: " + stillPresent);
+    }
+}
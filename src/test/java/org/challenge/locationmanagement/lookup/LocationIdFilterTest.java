@@ -0,0 +1,117 @@
+package org.challenge.locationmanagement.lookup;
+
+import org.challenge.locationmanagement.entity.Location;
+import org.challenge.locationmanagement.repository.LocationRepository;
+import org.challenge.locationmanagement.service.ChangeClock;
+import org.challenge.locationmanagement.sharding.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LocationIdFilterTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Mock
+    private LocationRepository locationRepository;
+
+    private LocationIdFilter locationIdFilter;
+
+    @BeforeEach
+    void setUp() {
+        when(locationRepository.currentTimestamp()).thenReturn(NOW);
+        ChangeClock changeClock = new ChangeClock(locationRepository, 10, Duration.ofSeconds(2));
+        locationIdFilter = new LocationIdFilter(locationRepository, new ShardRouter(1), changeClock,
+                true, 1_000, 0.01, 0);
+    }
+
+    @Test
+    @DisplayName("Should only rule out ids up to the last id created a settle window before the build")
+    void isDefinitelyAbsent_belowHighWaterMarkOnly() {
+        // Arrange
+        when(locationRepository.count()).thenReturn(3L);
+        when(locationRepository.findIdsCreatedUpTo(eq(NOW.minusSeconds(24)), any(Pageable.class))).thenReturn(List.of(3L));
+        when(locationRepository.findIdsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(1L, 3L, 4L));
+
+        // Act
+        locationIdFilter.build();
+
+        // Assert
+        assertTrue(locationIdFilter.isReady());
+        assertFalse(locationIdFilter.isDefinitelyAbsent(1L));
+        assertTrue(locationIdFilter.isDefinitelyAbsent(2L));
+        assertFalse(locationIdFilter.isDefinitelyAbsent(4L));
+        assertFalse(locationIdFilter.isDefinitelyAbsent(5L));
+    }
+
+    @Test
+    @DisplayName("Should learn ids created elsewhere and restored locations on refresh")
+    void refresh_addsIdsFromDatabase() {
+        // Arrange
+        when(locationRepository.count()).thenReturn(2L);
+        when(locationRepository.findIdsCreatedUpTo(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(3L))
+                .thenReturn(List.of(7L));
+        when(locationRepository.findIdsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(1L, 3L));
+        locationIdFilter.build();
+
+        Location restored = new Location("Restored", "Neighborhood", "City", "State");
+        restored.setId(2L);
+        restored.setUpdatedAt(NOW.minusSeconds(20));
+        when(locationRepository.findIdsAfter(eq(3L), any(Pageable.class))).thenReturn(List.of(6L, 7L, 8L));
+        when(locationRepository.findChangedSince(any(LocalDateTime.class), anyLong(), any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(restored));
+
+        // Act
+        locationIdFilter.refresh();
+
+        // Assert
+        assertFalse(locationIdFilter.isDefinitelyAbsent(2L));
+        assertTrue(locationIdFilter.isDefinitelyAbsent(5L));
+        assertFalse(locationIdFilter.isDefinitelyAbsent(6L));
+        assertFalse(locationIdFilter.isDefinitelyAbsent(7L));
+        assertFalse(locationIdFilter.isDefinitelyAbsent(9L));
+    }
+
+    @Test
+    @DisplayName("Should stop ruling out ids at once when rebuilt, and rule out the missing ones once built again")
+    void rebuild_dropsFilterUntilBuilt() throws Exception {
+        // Arrange
+        when(locationRepository.count()).thenReturn(2L);
+        when(locationRepository.findIdsCreatedUpTo(any(LocalDateTime.class), any(Pageable.class))).thenReturn(List.of(3L));
+        when(locationRepository.findIdsAfter(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(1L, 3L))
+                .thenReturn(List.of(1L, 2L));
+        locationIdFilter.build();
+        assertTrue(locationIdFilter.isDefinitelyAbsent(2L));
+
+        // Act
+        locationIdFilter.rebuild();
+
+        // Assert
+        assertFalse(locationIdFilter.isDefinitelyAbsent(2L));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!locationIdFilter.isReady()) {
+            assertTrue(System.nanoTime() < deadline, "the filter was not rebuilt");
+            Thread.sleep(10);
+        }
+        assertFalse(locationIdFilter.isDefinitelyAbsent(2L));
+        assertTrue(locationIdFilter.isDefinitelyAbsent(3L));
+    }
+}
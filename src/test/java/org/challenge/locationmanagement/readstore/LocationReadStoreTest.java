@@ -0,0 +1,258 @@
+package org.challenge.locationmanagement.readstore;
+
+import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.entity.Location;
+import org.challenge.locationmanagement.entity.LocationTombstone;
+import org.challenge.locationmanagement.event.LocationChangedEvent;
+import org.challenge.locationmanagement.repository.LocationRepository;
+import org.challenge.locationmanagement.repository.LocationTombstoneRepository;
+import org.challenge.locationmanagement.service.ChangeClock;
+import org.challenge.locationmanagement.sharding.ShardRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LocationReadStoreTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123_456_000);
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 2, 12, 0, 0);
+
+    @Mock
+    private LocationRepository locationRepository;
+
+    @Mock
+    private LocationTombstoneRepository locationTombstoneRepository;
+
+    @TempDir
+    Path directory;
+
+    private LocationReadStore store;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(locationRepository.currentTimestamp()).thenReturn(NOW);
+        store = newStore("");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        store.stop();
+    }
+
+    @Test
+    @DisplayName("Should serve loaded locations by id and in the requested order")
+    void load_servesLocations() {
+        // Arrange
+        loadWith(location(1L, "Praça", "Centro", "Recife", "PE"),
+                location(2L, "Arena", "Boa Vista", "Recife", "PE"),
+                location(3L, "Museu", null, "Olinda", "PE"));
+
+        // Act
+        Page<LocationDto> byName = store.findAll(PageRequest.of(0, 10, Sort.by("name")));
+        Page<LocationDto> byNeighborhood = store.findAll(PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "neighborhood")));
+
+        // Assert
+        assertTrue(store.isServing());
+        LocationDto found = store.findById(3L).orElseThrow();
+        assertEquals("Museu", found.getName());
+        assertNull(found.getNeighborhood());
+        assertEquals(CREATED_AT, found.getCreatedAt());
+        assertEquals(0L, found.getVersion());
+        assertTrue(store.findById(4L).isEmpty());
+
+        assertEquals(List.of(2L, 3L, 1L), ids(byName));
+        assertEquals(3, byName.getTotalElements());
+        // Nulls come first in descending order.
+        assertEquals(List.of(3L, 1L, 2L), ids(byNeighborhood));
+    }
+
+    @Test
+    @DisplayName("Should apply committed changes, ignoring stale versions and resurrections of deleted locations")
+    void apply_keepsStoreCurrent() {
+        // Arrange
+        loadWith(location(1L, "Alpha", "Centro", "Recife", "PE"),
+                location(2L, "Bravo", "Centro", "Recife", "PE"));
+
+        // Act
+        store.apply(List.of(LocationChangedEvent.created(dto(5L, "Charlie", 0L))));
+        store.apply(List.of(LocationChangedEvent.updated(dto(1L, "Zulu", 1L))));
+        store.apply(List.of(LocationChangedEvent.updated(dto(1L, "Stale", 0L))));
+        store.apply(List.of(LocationChangedEvent.deleted(2L)));
+        store.apply(List.of(LocationChangedEvent.updated(dto(2L, "Resurrected", 1L))));
+
+        // Assert
+        assertEquals("Zulu", store.findById(1L).orElseThrow().getName());
+        assertTrue(store.findById(2L).isEmpty());
+
+        Page<LocationDto> page = store.findAll(PageRequest.of(0, 10, Sort.by("name")));
+        assertEquals(List.of(5L, 1L), ids(page));
+        assertEquals(2, page.getTotalElements());
+
+        Page<LocationDto> second = store.findAll(PageRequest.of(1, 1, Sort.by("name")));
+        assertEquals(List.of(1L), ids(second));
+    }
+
+    @Test
+    @DisplayName("Should reuse the sorted overlay of a view and sort again after a change")
+    void findAll_sortsOverlayOncePerView() {
+        // Arrange
+        loadWith(location(1L, "Alpha", "Centro", "Recife", "PE"));
+        store.apply(List.of(LocationChangedEvent.created(dto(5L, "Charlie", 0L))));
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("name"));
+        assertEquals(List.of(1L, 5L), ids(store.findAll(pageable)));
+
+        // Act
+        Page<LocationDto> cached = store.findAll(pageable);
+        store.apply(List.of(LocationChangedEvent.created(dto(6L, "Bravo", 0L))));
+        Page<LocationDto> changed = store.findAll(pageable);
+
+        // Assert
+        assertEquals(List.of(1L, 5L), ids(cached));
+        assertEquals(List.of(1L, 6L, 5L), ids(changed));
+    }
+
+    @Test
+    @DisplayName("Should return the same pages after the changes are compacted into a new base")
+    void compact_preservesContent() {
+        // Arrange
+        loadWith(location(1L, "Alpha", "Centro", "Recife", "PE"),
+                location(2L, "Bravo", "Centro", "Recife", "PE"));
+        for (long id = 10; id < 4_200; id++) {
+            store.apply(List.of(LocationChangedEvent.created(dto(id, "Name" + (5_000 - id), 0L))));
+        }
+        store.apply(List.of(LocationChangedEvent.deleted(1L)));
+        Pageable pageable = PageRequest.of(3, 50, Sort.by("name").descending());
+        List<Long> before = ids(store.findAll(pageable));
+
+        // Act
+        store.compact();
+
+        // Assert
+        assertEquals(before, ids(store.findAll(pageable)));
+        assertEquals(4_191, store.findAll(pageable).getTotalElements());
+        assertTrue(store.findById(1L).isEmpty());
+        assertEquals("Name4990", store.findById(10L).orElseThrow().getName());
+    }
+
+    @Test
+    @DisplayName("Should compact once deletions alone pass the threshold")
+    void compact_countsDeletions() {
+        // Arrange
+        Location[] locations = new Location[4_200];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = location(i + 1L, "Name" + i, "Centro", "Recife", "PE");
+        }
+        loadWith(locations);
+        for (long id = 1; id <= 4_100; id++) {
+            store.apply(List.of(LocationChangedEvent.deleted(id)));
+        }
+        Pageable pageable = PageRequest.of(0, 200, Sort.by("id"));
+        List<Long> before = ids(store.findAll(pageable));
+        assertEquals(4_100, store.uncompactedChanges());
+
+        // Act
+        store.compact();
+
+        // Assert
+        assertEquals(0, store.uncompactedChanges());
+        assertEquals(before, ids(store.findAll(pageable)));
+        assertEquals(100, store.findAll(pageable).getTotalElements());
+        assertEquals(4_101L, before.get(0));
+        assertTrue(store.findById(1L).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should order strings in the configured collation rather than by character code")
+    void findAll_usesCollation() {
+        // Arrange
+        loadWith(location(1L, "Zebra", "Centro", "Recife", "PE"),
+                location(2L, "árvore", "Centro", "Recife", "PE"),
+                location(3L, "abacate", "Centro", "Recife", "PE"));
+        store.apply(List.of(LocationChangedEvent.created(dto(4L, "Ácaro", 0L))));
+
+        // Act
+        Page<LocationDto> page = store.findAll(PageRequest.of(0, 10, Sort.by("name")));
+
+        // Assert
+        assertEquals(List.of(3L, 4L, 2L, 1L), ids(page));
+    }
+
+    @Test
+    @DisplayName("Should start from the snapshot and catch up on the changes after its high-water mark")
+    void load_fromSnapshot() throws InterruptedException {
+        // Arrange
+        Path snapshotFile = directory.resolve("locations.snapshot");
+        LocationReadStore previous = newStore(snapshotFile.toString());
+        when(locationRepository.findAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(
+                location(1L, "Alpha", "Centro", "Recife", "PE"),
+                location(2L, "Bravo", "Centro", "Recife", "PE")));
+        previous.load();
+        previous.stop();
+
+        Location renamed = location(2L, "Charlie", "Centro", "Recife", "PE");
+        renamed.setVersion(1L);
+        when(locationRepository.findChangedSince(any(), any(), any(), any())).thenReturn(List.of(renamed));
+        when(locationTombstoneRepository.findDeletedSince(any(), any(), any(), any()))
+                .thenReturn(List.of(new LocationTombstone(1L, CREATED_AT)));
+        store = newStore(snapshotFile.toString());
+
+        // Act
+        store.load();
+
+        // Assert
+        assertTrue(store.isServing());
+        assertTrue(store.findById(1L).isEmpty());
+        assertEquals("Charlie", store.findById(2L).orElseThrow().getName());
+        assertEquals(1, store.findAll(PageRequest.of(0, 10, Sort.by("id"))).getTotalElements());
+        // Only the first store scanned the table.
+        verify(locationRepository, times(1)).findAfter(any(), any());
+    }
+
+    private LocationReadStore newStore(String snapshotPath) {
+        return new LocationReadStore(locationRepository, locationTombstoneRepository, new ShardRouter(1),
+                new ChangeClock(locationRepository, 10, Duration.ofSeconds(2)), true, 0,
+                snapshotPath, 0, "en-US");
+    }
+
+    private void loadWith(Location... locations) {
+        when(locationRepository.findAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(locations));
+        store.load();
+    }
+
+    private static Location location(Long id, String name, String neighborhood, String city, String state) {
+        Location location = new Location(name, neighborhood, city, state);
+        location.setId(id);
+        location.setCreatedAt(CREATED_AT);
+        location.setUpdatedAt(CREATED_AT);
+        location.setVersion(0L);
+        return location;
+    }
+
+    private static LocationDto dto(Long id, String name, Long version) {
+        return new LocationDto(id, name, "Centro", "Recife", "PE", CREATED_AT, CREATED_AT, version);
+    }
+
+    private static List<Long> ids(Page<LocationDto> page) {
+        return page.getContent().stream().map(LocationDto::getId).toList();
+    }
+}
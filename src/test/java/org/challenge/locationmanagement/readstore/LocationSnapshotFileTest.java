@@ -0,0 +1,65 @@
+package org.challenge.locationmanagement.readstore;
+
+import org.challenge.locationmanagement.dto.LocationDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocationSnapshotFileTest {
+
+    private static final LocalDateTime HIGH_WATER_MARK = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123_456_000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should read back the locations and high-water mark that were written")
+    void write_thenRead_roundTrips() throws IOException {
+        LocationColumns columns = new LocationColumns.Builder(2)
+                .add(new LocationDto(7L, "Praça do Marco Zero", "Recife Antigo", "Recife", "PE",
+                        HIGH_WATER_MARK.minusDays(1), HIGH_WATER_MARK, 3L, "erp-7"))
+                .add(new LocationDto(4L, "Arena", null, "Recife", "PE", HIGH_WATER_MARK, HIGH_WATER_MARK, 0L))
+                .build();
+        Path file = directory.resolve("snapshots/locations.snapshot");
+
+        LocationSnapshotFile.write(file, columns, HIGH_WATER_MARK);
+        LocationSnapshotFile.Snapshot snapshot = LocationSnapshotFile.read(file);
+
+        assertEquals(HIGH_WATER_MARK, snapshot.highWaterMark());
+        assertEquals(2, snapshot.columns().size);
+        LocationDto first = snapshot.columns().toDto(0);
+        assertEquals(4L, first.getId());
+        assertNull(first.getNeighborhood());
+        LocationDto second = snapshot.columns().toDto(1);
+        assertEquals("Praça do Marco Zero", second.getName());
+        assertEquals(HIGH_WATER_MARK.minusDays(1), second.getCreatedAt());
+        assertEquals(3L, second.getVersion());
+        assertEquals("erp-7", second.getExternalRef());
+        assertNull(first.getExternalRef());
+        assertFalse(Files.exists(directory.resolve("snapshots/locations.snapshot.tmp")));
+    }
+
+    @Test
+    @DisplayName("Should reject a snapshot whose contents no longer match its checksum")
+    void read_rejectsCorruptFile() throws IOException {
+        LocationColumns columns = new LocationColumns.Builder(1)
+                .add(new LocationDto(1L, "Arena", "Boa Vista", "Recife", "PE", HIGH_WATER_MARK, HIGH_WATER_MARK, 0L))
+                .build();
+        Path file = directory.resolve("locations.snapshot");
+        LocationSnapshotFile.write(file, columns, HIGH_WATER_MARK);
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[70] ^= 1;
+        Files.write(file, bytes);
+
+        IOException error = assertThrows(IOException.class, () -> LocationSnapshotFile.read(file));
+        assertTrue(error.getMessage().contains("checksum"));
+    }
+}
@@ -0,0 +1,57 @@
+package org.challenge.locationmanagement.readstore;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentLongMapTest {
+
+    @Test
+    @DisplayName("Should behave like a HashMap under random puts and removes, leaving earlier versions untouched")
+    void putAndRemove_matchHashMap() {
+        Random random = new Random(42);
+        Map<Long, String> expected = new HashMap<>();
+        PersistentLongMap<String> map = PersistentLongMap.empty();
+
+        for (int i = 0; i < 50_000; i++) {
+            // A narrow key range so keys are removed and put again, plus the extremes of the range.
+            long key = random.nextInt(5) == 0 ? (random.nextBoolean() ? Long.MIN_VALUE : Long.MAX_VALUE) : random.nextInt(4_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                String value = "v" + i;
+                expected.put(key, value);
+                map = map.put(key, value);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = -10; key < 4_010; key++) {
+            assertEquals(expected.get(key), map.get(key), "key " + key);
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+        assertEquals(expected.get(Long.MIN_VALUE), map.get(Long.MIN_VALUE));
+        assertEquals(new TreeSet<>(expected.keySet()), toSet(map.keys()));
+        assertEquals(new TreeSet<>(expected.values()), new TreeSet<>(map.values()));
+
+        PersistentLongMap<String> previous = map;
+        for (long key : previous.keys()) {
+            map = map.remove(key);
+        }
+        assertTrue(map.isEmpty());
+        assertEquals(expected.size(), previous.size());
+        assertEquals(expected.keySet(), toSet(previous.keys()));
+    }
+
+    private static Set<Long> toSet(long[] keys) {
+        Set<Long> set = new TreeSet<>();
+        for (long key : keys) {
+            set.add(key);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,177 @@
+package org.challenge.locationmanagement.service.impl;
+
+import org.challenge.locationmanagement.dto.LocationBatchRequest;
+import org.challenge.locationmanagement.dto.LocationBatchResultDto;
+import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.dto.LocationOperationDto;
+import org.challenge.locationmanagement.entity.Location;
+import org.challenge.locationmanagement.event.LocationChangedEvent;
+import org.challenge.locationmanagement.repository.LocationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+
+@ExtendWith(MockitoExtension.class)
+class LocationBatchServiceImplTest {
+
+    @Mock
+    private LocationRepository locationRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private LocationBatchServiceImpl locationBatchService;
+
+    @BeforeEach
+    public void setUp() {
+        locationBatchService = new LocationBatchServiceImpl(locationRepository, eventPublisher, transactionTemplate);
+        lenient().doAnswer(invocation -> {
+            Consumer<TransactionStatus> callback = invocation.getArgument(0);
+            callback.accept(new SimpleTransactionStatus());
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    @DisplayName("Should send consecutive operations of the same type as one batch")
+    void executeBatch_groupsConsecutiveOperations() {
+        // Arrange
+        LocationBatchRequest request = new LocationBatchRequest(LocationBatchRequest.Mode.ATOMIC, List.of(
+                create("First"),
+                create("Second"),
+                update(7L, null, "Renamed")));
+
+        when(locationRepository.insertAll(anyList())).thenAnswer(invocation -> {
+            List<Location> locations = invocation.getArgument(0);
+            for (int i = 0; i < locations.size(); i++) {
+                locations.get(i).setId(10L + i);
+                locations.get(i).setVersion(0L);
+            }
+            return locations;
+        });
+        when(locationRepository.updateAll(anyList())).thenReturn(new int[]{1});
+        when(locationRepository.findAllCurrent(List.of(7L))).thenReturn(List.of(stored(7L, "Renamed", 3L)));
+
+        // Act
+        LocationBatchResultDto result = locationBatchService.executeBatch(request);
+
+        // Assert
+        assertTrue(result.isCommitted());
+        assertEquals(3, result.getSucceeded());
+        assertEquals(List.of(201, 201, 200), result.getResults().stream().map(r -> r.getStatus()).toList());
+        assertEquals(11L, result.getResults().get(1).getId());
+        assertEquals(3L, result.getResults().get(2).getLocation().getVersion());
+        verify(locationRepository, times(1)).insertAll(anyList());
+        verify(locationRepository, times(1)).updateAll(anyList());
+        verify(eventPublisher, times(3)).publishEvent(any(LocationChangedEvent.class));
+    }
+
+    @Test
+    @DisplayName("Should roll back an ATOMIC batch when an operation hits a version mismatch")
+    void executeBatch_atomicRollsBackOnFailure() {
+        // Arrange
+        LocationBatchRequest request = new LocationBatchRequest(LocationBatchRequest.Mode.ATOMIC, List.of(
+                delete(1L, null),
+                update(2L, 4L, "Renamed"),
+                delete(3L, null)));
+
+        when(locationRepository.deleteAll(eq(List.of(1L)), anyList())).thenReturn(new int[]{1});
+        when(locationRepository.updateAll(anyList())).thenReturn(new int[]{0});
+        when(locationRepository.findAllCurrent(List.of())).thenReturn(List.of());
+        when(locationRepository.existsById(2L)).thenReturn(true);
+
+        // Act
+        LocationBatchResultDto result = locationBatchService.executeBatch(request);
+
+        // Assert
+        assertFalse(result.isCommitted());
+        assertEquals(List.of(424, 412, 424), result.getResults().stream().map(r -> r.getStatus()).toList());
+        assertEquals(0, result.getSucceeded());
+        verify(locationRepository, never()).deleteAll(eq(List.of(3L)), anyList());
+    }
+
+    @Test
+    @DisplayName("Should commit the successful operations of a CONTINUE_ON_ERROR batch")
+    void executeBatch_continueOnErrorReportsFailures() {
+        // Arrange
+        LocationBatchRequest request = new LocationBatchRequest(LocationBatchRequest.Mode.CONTINUE_ON_ERROR, List.of(
+                delete(1L, null),
+                delete(2L, null),
+                new LocationOperationDto(LocationOperationDto.Type.UPDATE, null, null, location("Name"))));
+
+        when(locationRepository.deleteAll(eq(List.of(1L, 2L)), anyList())).thenReturn(new int[]{1, 0});
+
+        // Act
+        LocationBatchResultDto result = locationBatchService.executeBatch(request);
+
+        // Assert
+        assertTrue(result.isCommitted());
+        assertEquals(List.of(200, 404, 400), result.getResults().stream().map(r -> r.getStatus()).toList());
+        assertEquals(1, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        verify(eventPublisher, times(1)).publishEvent(LocationChangedEvent.deleted(1L));
+    }
+
+    @Test
+    @DisplayName("Should reject an invalid ATOMIC batch without touching the database")
+    void executeBatch_atomicValidatesFirst() {
+        // Arrange
+        LocationBatchRequest request = new LocationBatchRequest(LocationBatchRequest.Mode.ATOMIC, List.of(
+                create("Name"),
+                new LocationOperationDto(LocationOperationDto.Type.DELETE, null, null, null)));
+
+        // Act
+        LocationBatchResultDto result = locationBatchService.executeBatch(request);
+
+        // Assert
+        assertFalse(result.isCommitted());
+        assertEquals(List.of(424, 400), result.getResults().stream().map(r -> r.getStatus()).toList());
+        verifyNoInteractions(locationRepository, transactionTemplate);
+    }
+
+    private static LocationOperationDto create(String name) {
+        return new LocationOperationDto(LocationOperationDto.Type.CREATE, null, null, location(name));
+    }
+
+    private static LocationOperationDto update(Long id, Long version, String name) {
+        return new LocationOperationDto(LocationOperationDto.Type.UPDATE, id, version, location(name));
+    }
+
+    private static LocationOperationDto delete(Long id, Long version) {
+        return new LocationOperationDto(LocationOperationDto.Type.DELETE, id, version, null);
+    }
+
+    private static LocationDto location(String name) {
+        return new LocationDto(null, name, "Neighborhood", "City", "State", null, null);
+    }
+
+    private static Location stored(Long id, String name, Long version) {
+        Location location = new Location(name, "Neighborhood", "City", "State");
+        location.setId(id);
+        location.setCreatedAt(LocalDateTime.now());
+        location.setUpdatedAt(LocalDateTime.now());
+        location.setVersion(version);
+        return location;
+    }
+}
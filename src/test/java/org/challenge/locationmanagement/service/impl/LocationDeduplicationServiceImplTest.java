@@ -0,0 +1,215 @@
+package org.challenge.locationmanagement.service.impl;
+
+import org.challenge.locationmanagement.dto.DuplicateClusterDto;
+import org.challenge.locationmanagement.dto.DuplicateReportDto;
+import org.challenge.locationmanagement.dto.DuplicateScanJobDto;
+import org.challenge.locationmanagement.entity.Location;
+import org.challenge.locationmanagement.exception.ResourceNotFoundException;
+import org.challenge.locationmanagement.exception.ResourcePreconditionFailedException;
+import org.challenge.locationmanagement.repository.LocationRepository;
+import org.challenge.locationmanagement.service.LocationService;
+import org.challenge.locationmanagement.sharding.ShardRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LocationDeduplicationServiceImplTest {
+
+    @Mock
+    private LocationRepository locationRepository;
+
+    @Mock
+    private LocationService locationService;
+
+    @TempDir
+    Path spillDirectory;
+
+    private LocationDeduplicationServiceImpl locationDeduplicationService;
+
+    private static final List<Location> LOCATIONS = List.of(
+            location(1L, "Praça da Sé", "Sé", "São Paulo", "SP"),
+            location(2L, "Museu do Ipiranga", "Ipiranga", "São Paulo", "SP"),
+            location(3L, "  praca da  se", "SE", "sao paulo", "sp"),
+            location(4L, "Praça da Sé", "Sé", "São Paulo", "RJ"),
+            location(5L, "MUSEU DO IPIRANGA", "ipiranga ", "Sao Paulo", "SP"),
+            location(6L, "Praca da Se", "Se", "Sao Paulo", "SP"));
+
+    @BeforeEach
+    void setUp() {
+        locationDeduplicationService = new LocationDeduplicationServiceImpl(locationRepository, locationService,
+                new ShardRouter(1), 4, spillDirectory.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        locationDeduplicationService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should report locations that differ only in case, accents or whitespace as one cluster")
+    void findDuplicates_reportsClusters() throws IOException {
+        // Arrange
+        stubScan(LOCATIONS);
+
+        // Act
+        DuplicateReportDto report = locationDeduplicationService.findDuplicates(false, 100);
+
+        // Assert
+        assertEquals(6, report.getScanned());
+        assertEquals(2, report.getClusterCount());
+        assertEquals(3, report.getDuplicateCount());
+        assertEquals(0, report.getDeleted());
+
+        DuplicateClusterDto first = report.getClusters().get(0);
+        assertEquals(1L, first.getKeptId());
+        assertEquals(List.of(3L, 6L), first.getDuplicateIds());
+        assertEquals("Praça da Sé", first.getName());
+        DuplicateClusterDto second = report.getClusters().get(1);
+        assertEquals(2L, second.getKeptId());
+        assertEquals(List.of(5L), second.getDuplicateIds());
+
+        verify(locationService, never()).deleteLocation(any(), any());
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Should delete all but the oldest location of each cluster, skipping those changed since the scan")
+    void findDuplicates_mergesClusters() {
+        // Arrange
+        stubScan(LOCATIONS);
+        doNothing().when(locationService).deleteLocation(anyLong(), anyLong());
+        doThrow(new ResourcePreconditionFailedException("Location with ID 6 is no longer at version 0."))
+                .when(locationService).deleteLocation(eq(6L), anyLong());
+
+        // Act
+        DuplicateReportDto report = locationDeduplicationService.findDuplicates(true, 1);
+
+        // Assert
+        assertEquals(2, report.getClusterCount());
+        assertEquals(2, report.getDeleted());
+        assertEquals(1, report.getSkipped());
+        assertEquals(1, report.getClusters().size());
+        assertEquals(1L, report.getClusters().get(0).getKeptId());
+
+        verify(locationService).deleteLocation(3L, 0L);
+        verify(locationService).deleteLocation(5L, 0L);
+        verify(locationService, never()).deleteLocation(eq(1L), any());
+        verify(locationService, never()).deleteLocation(eq(2L), any());
+        verify(locationService, never()).deleteLocation(eq(4L), any());
+    }
+
+    @Test
+    @DisplayName("Should move the external reference of a duplicate to the kept location, once per cluster")
+    void findDuplicates_mergesExternalRefs() {
+        // Arrange
+        Location kept = location(1L, "Praça da Sé", "Sé", "São Paulo", "SP");
+        Location withRef = location(3L, "  praca da  se", "SE", "sao paulo", "sp");
+        withRef.setExternalRef("ext-3");
+        Location secondWithRef = location(6L, "Praca da Se", "Se", "Sao Paulo", "SP");
+        secondWithRef.setExternalRef("ext-6");
+        Location withoutRef = location(7L, "PRACA DA SE", "Se", "Sao Paulo", "SP");
+        stubScan(List.of(kept, withRef, secondWithRef, withoutRef));
+
+        // Act
+        DuplicateReportDto report = locationDeduplicationService.findDuplicates(true, 100);
+
+        // Assert
+        assertEquals(1, report.getClusterCount());
+        assertEquals(2, report.getDeleted());
+        assertEquals(1, report.getSkipped());
+
+        verify(locationService).mergeLocation(1L, 0L, 3L, 0L);
+        verify(locationService).deleteLocation(7L, 0L);
+        verify(locationService, never()).mergeLocation(any(), any(), eq(6L), any());
+        verify(locationService, never()).deleteLocation(eq(3L), any());
+        verify(locationService, never()).deleteLocation(eq(6L), any());
+    }
+
+    @Test
+    @DisplayName("Should run the scan as a background job that can be polled by id")
+    void startScan_runsInBackground() throws InterruptedException {
+        // Arrange
+        stubScan(LOCATIONS);
+
+        // Act
+        DuplicateScanJobDto started = locationDeduplicationService.startScan(false, 100);
+        DuplicateScanJobDto job = awaitJob(started.getJobId());
+
+        // Assert
+        assertEquals(DuplicateScanJobDto.Status.SUCCEEDED, job.getStatus());
+        assertNotNull(job.getFinishedAt());
+        assertEquals(2, job.getReport().getClusterCount());
+        assertThrows(ResourceNotFoundException.class, () -> locationDeduplicationService.getScanJob("unknown"));
+    }
+
+    @Test
+    @DisplayName("Should report a failed scan on its job")
+    void startScan_reportsFailure() throws InterruptedException {
+        // Arrange
+        when(locationRepository.findAfter(eq(0L), any(Pageable.class))).thenThrow(new IllegalStateException("Connection refused"));
+
+        // Act
+        DuplicateScanJobDto job = awaitJob(locationDeduplicationService.startScan(false, 100).getJobId());
+
+        // Assert
+        assertEquals(DuplicateScanJobDto.Status.FAILED, job.getStatus());
+        assertEquals("Connection refused", job.getError());
+        assertNull(job.getReport());
+    }
+
+    @Test
+    @DisplayName("Should normalise case, accents and whitespace")
+    void normalize_foldsCaseAccentsAndWhitespace() {
+        assertEquals("praca da se", LocationDeduplicationServiceImpl.normalize("  Praça \t da   SÉ "));
+        assertEquals("", LocationDeduplicationServiceImpl.normalize(null));
+        assertNotEquals(LocationDeduplicationServiceImpl.normalize("Sé"), LocationDeduplicationServiceImpl.normalize("Sede"));
+    }
+
+    private void stubScan(List<Location> locations) {
+        when(locationRepository.findAfter(eq(0L), any(Pageable.class))).thenReturn(locations);
+        when(locationRepository.findAllCurrent(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return locations.stream().filter(location -> ids.contains(location.getId())).toList();
+        });
+    }
+
+    private DuplicateScanJobDto awaitJob(String jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        DuplicateScanJobDto job = locationDeduplicationService.getScanJob(jobId);
+        while (job.getStatus() == DuplicateScanJobDto.Status.RUNNING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            job = locationDeduplicationService.getScanJob(jobId);
+        }
+        return job;
+    }
+
+    private static Location location(Long id, String name, String neighborhood, String city, String state) {
+        Location location = new Location(name, neighborhood, city, state);
+        location.setId(id);
+        location.setVersion(0L);
+        return location;
+    }
+}
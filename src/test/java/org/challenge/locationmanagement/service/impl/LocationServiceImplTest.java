@@ -1,10 +1,27 @@
 package org.challenge.locationmanagement.service.impl;
 
+import org.challenge.locationmanagement.dto.BulkUpsertResultDto;
+import org.challenge.locationmanagement.dto.LocationChangeDto;
+import org.challenge.locationmanagement.dto.LocationChangesDto;
 import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.dto.LocationHistoryDto;
+import org.challenge.locationmanagement.dto.LocationUpsertDto;
 import org.challenge.locationmanagement.entity.Location;
+import org.challenge.locationmanagement.entity.LocationHistory;
+import org.challenge.locationmanagement.entity.LocationTombstone;
+import org.challenge.locationmanagement.event.LocationChangedEvent;
+import org.challenge.locationmanagement.exception.ResourceBadRequestException;
 import org.challenge.locationmanagement.exception.ResourceNotFoundException;
+import org.challenge.locationmanagement.exception.ResourcePreconditionFailedException;
+import org.challenge.locationmanagement.lookup.LocationIdFilter;
 import org.challenge.locationmanagement.mapper.LocationMapper;
+import org.challenge.locationmanagement.readstore.LocationReadStore;
+import org.challenge.locationmanagement.repository.LocationHistoryRepository;
 import org.challenge.locationmanagement.repository.LocationRepository;
+import org.challenge.locationmanagement.repository.LocationRepositoryCustom.UpsertedLocation;
+import org.challenge.locationmanagement.repository.LocationTombstoneRepository;
+import org.challenge.locationmanagement.service.ChangeClock;
+import org.challenge.locationmanagement.service.ChangeCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -13,14 +30,19 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 
@@ -30,12 +52,31 @@ class LocationServiceImplTest {
     @Mock
     private LocationRepository locationRepository;
 
+    @Mock
+    private LocationTombstoneRepository locationTombstoneRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private LocationIdFilter locationIdFilter;
+
+    @Mock
+    private LocationHistoryRepository locationHistoryRepository;
+
+    @Mock
+    private LocationReadStore locationReadStore;
+
+    @Mock
+    private ChangeClock changeClock;
+
     @InjectMocks
     private LocationServiceImpl locationService;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        lenient().when(changeClock.now()).thenReturn(LocalDateTime.of(2024, 8, 15, 12, 0));
     }
 
     @Test
@@ -71,6 +112,7 @@ class LocationServiceImplTest {
 
         // Verifique interações com mocks
         verify(locationRepository, times(1)).save(any(Location.class));
+        verify(eventPublisher, times(1)).publishEvent(any(LocationChangedEvent.class));
 
     }
 
@@ -130,6 +172,27 @@ class LocationServiceImplTest {
         verify(locationRepository, times(1)).findById(locationId);
     }
 
+    @Test
+    @DisplayName("Should throw ResourceNotFoundException without querying when the id filter rules the id out")
+    void getLocationById_definitelyAbsent() {
+        // Arrange
+        Long locationId = 42L;
+
+        // Mock behavior
+        when(locationIdFilter.isDefinitelyAbsent(locationId)).thenReturn(true);
+
+        // Act & Assert
+        ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> {
+            locationService.getLocationById(locationId);
+        });
+
+        assertEquals("Location is not exists with given id: " + locationId, exception.getMessage());
+        assertEquals(0, exception.getStackTrace().length);
+
+        // Verify interactions with mock
+        verify(locationRepository, never()).findById(anyLong());
+    }
+
     @Test
     @DisplayName("Should return paginated list of LocationDto when there are locations in the repository")
     void getAllLocations_success() {
@@ -202,8 +265,9 @@ class LocationServiceImplTest {
         LocationDto updatedLocationDtoResult = new LocationDto(locationId, "NewName", "NewNeighborhood", "NewCity", "NewState", updatedLocation.getCreatedAt(), updatedLocation.getUpdatedAt());
 
         // Mock behavior
-        when(locationRepository.findById(locationId)).thenReturn(java.util.Optional.of(existingLocation));
-        when(locationRepository.saveAndFlush(existingLocation)).thenReturn(updatedLocation);
+        when(locationRepository.updateLocation(eq(locationId), eq("NewName"), eq("NewNeighborhood"), eq("NewCity"),
+                eq("NewState"))).thenReturn(1);
+        when(locationRepository.findById(locationId)).thenReturn(java.util.Optional.of(updatedLocation));
 
 
         // Act
@@ -221,7 +285,7 @@ class LocationServiceImplTest {
 
         // Verify interactions with mocks
         verify(locationRepository, times(1)).findById(locationId);
-        verify(locationRepository, times(1)).saveAndFlush(existingLocation);
+        verify(locationRepository, never()).saveAndFlush(any(Location.class));
 
     }
 
@@ -233,7 +297,8 @@ class LocationServiceImplTest {
         LocationDto updatedLocationDto = new LocationDto(null, "NewName", "NewNeighborhood", "NewCity", "NewState", null, null);
 
         // Mock behavior
-        when(locationRepository.findById(locationId)).thenReturn(java.util.Optional.empty());
+        when(locationRepository.updateLocation(eq(locationId), any(), any(), any(), any()))
+                .thenReturn(0);
 
         // Act and Assert
         ResourceNotFoundException thrown = assertThrows(ResourceNotFoundException.class, () -> {
@@ -243,7 +308,7 @@ class LocationServiceImplTest {
         assertEquals("Location does not exist with given id: " + locationId, thrown.getMessage());
 
         // Verify interactions with mocks
-        verify(locationRepository, times(1)).findById(locationId);
+        verify(locationRepository, never()).findById(locationId);
         verify(locationRepository, never()).saveAndFlush(any(Location.class));
     }
 
@@ -252,18 +317,17 @@ class LocationServiceImplTest {
     void deleteLocation_success() {
         // Arrange
         Long locationId = 1L;
-        Location existingLocation = new Location("Name", "Neighborhood", "City", "State");
-        existingLocation.setId(locationId);
 
         // Mock behavior
-        when(locationRepository.findById(locationId)).thenReturn(java.util.Optional.of(existingLocation));
+        when(locationRepository.deleteLocation(locationId)).thenReturn(1);
 
         // Act
         locationService.deleteLocation(locationId);
 
         // Assert
-        verify(locationRepository, times(1)).findById(locationId);
-        verify(locationRepository, times(1)).deleteById(locationId);
+        verify(locationRepository, times(1)).deleteLocation(locationId);
+        verify(locationTombstoneRepository, times(1)).save(any(LocationTombstone.class));
+        verify(eventPublisher, times(1)).publishEvent(LocationChangedEvent.deleted(locationId));
     }
 
     @Test
@@ -273,7 +337,7 @@ class LocationServiceImplTest {
         Long locationId = 1L;
 
         // Mock behavior
-        when(locationRepository.findById(locationId)).thenReturn(java.util.Optional.empty());
+        when(locationRepository.deleteLocation(locationId)).thenReturn(0);
 
         // Act and Assert
         ResourceNotFoundException thrown = assertThrows(ResourceNotFoundException.class, () -> {
@@ -283,8 +347,273 @@ class LocationServiceImplTest {
         assertEquals("Location is not exists with given id: " + locationId, thrown.getMessage());
 
         // Verify interactions with mocks
-        verify(locationRepository, times(1)).findById(locationId);
-        verify(locationRepository, never()).deleteById(locationId);
+        verify(locationRepository, times(1)).deleteLocation(locationId);
+        verify(locationTombstoneRepository, never()).save(any(LocationTombstone.class));
+    }
+
+    @Test
+    @DisplayName("Should throw ResourcePreconditionFailedException when the location is no longer at the expected version")
+    void updateLocation_versionMismatch() {
+        // Arrange
+        Long locationId = 1L;
+        LocationDto updatedLocationDto = new LocationDto(null, "NewName", "NewNeighborhood", "NewCity", "NewState", null, null);
+
+        // Mock behavior
+        when(locationRepository.updateLocationIfVersion(eq(locationId), eq(3L), any(), any(), any(), any()))
+                .thenReturn(0);
+        when(locationRepository.existsById(locationId)).thenReturn(true);
+
+        // Act and Assert
+        assertThrows(ResourcePreconditionFailedException.class, () -> {
+            locationService.updateLocation(locationId, updatedLocationDto, 3L);
+        });
+
+        // Verify interactions with mocks
+        verify(eventPublisher, never()).publishEvent(
+                argThat((LocationChangedEvent event) -> event.type() == LocationChangedEvent.Type.UPDATED));
+    }
+
+    @Test
+    @DisplayName("Should delete location only when it is still at the expected version")
+    void deleteLocation_versionMismatch() {
+        // Arrange
+        Long locationId = 1L;
+
+        // Mock behavior
+        when(locationRepository.deleteLocationIfVersion(locationId, 3L)).thenReturn(0);
+        when(locationRepository.existsById(locationId)).thenReturn(true);
+
+        // Act and Assert
+        assertThrows(ResourcePreconditionFailedException.class, () -> {
+            locationService.deleteLocation(locationId, 3L);
+        });
+
+        verify(locationTombstoneRepository, never()).save(any(LocationTombstone.class));
+    }
+
+    @Test
+    @DisplayName("Should delete the duplicate and hand its external reference to the kept location")
+    void mergeLocation_movesExternalRef() {
+        // Arrange
+        Location duplicate = new Location("Praca da Se", "Se", "Sao Paulo", "SP");
+        duplicate.setId(6L);
+        duplicate.setExternalRef("ext-6");
+        Location kept = new Location("Praça da Sé", "Sé", "Sao Paulo", "SP");
+        kept.setId(1L);
+        kept.setExternalRef("ext-6");
+        kept.setVersion(1L);
+
+        // Mock behavior
+        when(locationRepository.findById(6L)).thenReturn(Optional.of(duplicate));
+        when(locationRepository.deleteLocationIfVersion(6L, 0L)).thenReturn(1);
+        when(locationRepository.adoptExternalRef(1L, 0L, "ext-6"))
+                .thenReturn(1);
+        when(locationRepository.findById(1L)).thenReturn(Optional.of(kept));
+
+        // Act
+        LocationDto result = locationService.mergeLocation(1L, 0L, 6L, 0L);
+
+        // Assert
+        assertEquals(1L, result.getId());
+        verify(locationTombstoneRepository).save(any(LocationTombstone.class));
+        verify(eventPublisher).publishEvent(LocationChangedEvent.deleted(6L));
+        verify(eventPublisher).publishEvent(LocationChangedEvent.updated(result));
+    }
+
+    @Test
+    @DisplayName("Should fail the merge when the kept location changed, so the delete rolls back with it")
+    void mergeLocation_keptVersionMismatch() {
+        // Arrange
+        Location duplicate = new Location("Praca da Se", "Se", "Sao Paulo", "SP");
+        duplicate.setId(6L);
+        duplicate.setExternalRef("ext-6");
+
+        // Mock behavior
+        when(locationRepository.findById(6L)).thenReturn(Optional.of(duplicate));
+        when(locationRepository.deleteLocationIfVersion(6L, 0L)).thenReturn(1);
+        when(locationRepository.adoptExternalRef(1L, 0L, "ext-6"))
+                .thenReturn(0);
+        when(locationRepository.existsById(1L)).thenReturn(true);
+
+        // Act and Assert
+        assertThrows(ResourcePreconditionFailedException.class, () -> locationService.mergeLocation(1L, 0L, 6L, 0L));
+        verify(eventPublisher, never()).publishEvent(
+                argThat((LocationChangedEvent event) -> event.type() == LocationChangedEvent.Type.UPDATED));
+    }
+
+    @Test
+    @DisplayName("Should merge updated and deleted locations into one ordered change feed")
+    void getLocationChanges_mergesUpsertsAndTombstones() {
+        // Arrange
+        LocalDateTime base = LocalDateTime.of(2024, 8, 15, 12, 0);
+
+        Location location1 = new Location("Name1", "Neighborhood1", "City1", "State1");
+        location1.setId(1L);
+        location1.setCreatedAt(base);
+        location1.setUpdatedAt(base);
+
+        Location location3 = new Location("Name3", "Neighborhood3", "City3", "State3");
+        location3.setId(3L);
+        location3.setCreatedAt(base);
+        location3.setUpdatedAt(base.plusSeconds(2));
+
+        LocationTombstone tombstone = new LocationTombstone(2L, base.plusSeconds(1));
+
+        LocalDateTime settledUpTo = base.plusMinutes(1);
+        when(changeClock.settledUpTo()).thenReturn(settledUpTo);
+        when(locationRepository.findChangedSince(any(), anyLong(), eq(settledUpTo), any(Pageable.class)))
+                .thenReturn(Arrays.asList(location1, location3));
+        when(locationTombstoneRepository.findDeletedSince(any(), anyLong(), eq(settledUpTo), any(Pageable.class)))
+                .thenReturn(List.of(tombstone));
+
+        // Act
+        LocationChangesDto result = locationService.getLocationChanges(null, 2);
+
+        // Assert
+        assertEquals(2, result.getChanges().size());
+        assertEquals(1L, result.getChanges().get(0).getId());
+        assertEquals(LocationChangeDto.ChangeType.UPSERT, result.getChanges().get(0).getType());
+        assertEquals(2L, result.getChanges().get(1).getId());
+        assertEquals(LocationChangeDto.ChangeType.DELETE, result.getChanges().get(1).getType());
+        assertNull(result.getChanges().get(1).getLocation());
+        assertTrue(result.isHasMore());
+
+        ChangeCursor next = ChangeCursor.parse(result.getNextCursor());
+        assertEquals(base.plusSeconds(1), next.changedAt());
+        assertEquals(2L, next.id());
+    }
+
+    @Test
+    @DisplayName("Should report inserted, updated and unchanged counts of a bulk upsert")
+    void upsertLocations_reportsCounts() {
+        // Arrange
+        List<LocationUpsertDto> upserts = Arrays.asList(
+                new LocationUpsertDto("ref-1", "Name1", "Neighborhood1", "City", "State"),
+                new LocationUpsertDto("ref-2", "Name2", "Neighborhood2", "City", "State"),
+                new LocationUpsertDto("ref-3", "Name3", "Neighborhood3", "City", "State"));
+
+        Location inserted = new Location("Name1", "Neighborhood1", "City", "State");
+        inserted.setId(1L);
+        Location updated = new Location("Name2", "Neighborhood2", "City", "State");
+        updated.setId(2L);
+
+        // Mock behavior: the third location already exists with the same values
+        when(locationRepository.upsertAll(anyList())).thenReturn(Arrays.asList(
+                new UpsertedLocation(inserted, true),
+                new UpsertedLocation(updated, false)));
+
+        // Act
+        BulkUpsertResultDto result = locationService.upsertLocations(upserts);
+
+        // Assert
+        assertEquals(1, result.getInserted());
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getUnchanged());
+        verify(eventPublisher, times(2)).publishEvent(any(LocationChangedEvent.class));
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Should reject a bulk upsert that repeats the same location")
+    void upsertLocations_duplicateKey() {
+        // Arrange
+        List<LocationUpsertDto> upserts = Arrays.asList(
+                new LocationUpsertDto("ref-1", "Name1", "Neighborhood1", "City", "State"),
+                new LocationUpsertDto("ref-1", "Other", "Neighborhood1", "City", "State"));
+
+        // Act & Assert
+        assertThrows(ResourceBadRequestException.class, () -> locationService.upsertLocations(upserts));
+        verify(locationRepository, never()).upsertAll(anyList());
+    }
+
+
+    @Test
+    @DisplayName("Should return the history of a location newest first by default")
+    void getLocationHistory_defaultsToNewestFirst() {
+        // Arrange
+        LocationHistory history = new LocationHistory();
+        history.setLocationId(1L);
+        history.setChangeType("UPDATED");
+        history.setName("Name");
+        history.setVersion(2L);
+        history.setChangedAt(LocalDateTime.now());
+
+        Pageable expectedPageable = PageRequest.of(0, 20, Sort.by("changedAt").descending().and(Sort.by("id").descending()));
+        when(locationHistoryRepository.findByLocationId(1L, expectedPageable))
+                .thenReturn(new PageImpl<>(List.of(history), expectedPageable, 1));
+
+        // Act
+        Page<LocationHistoryDto> result = locationService.getLocationHistory(1L, PageRequest.of(0, 20));
+
+        // Assert
+        assertEquals(1, result.getTotalElements());
+        assertEquals("UPDATED", result.getContent().get(0).getChangeType());
+        assertEquals(2L, result.getContent().get(0).getVersion());
+        verify(locationHistoryRepository).findByLocationId(1L, expectedPageable);
+    }
+
+    @Test
+    @DisplayName("Should select only the requested fields, plus the id, in response order")
+    void getAllLocations_withFields_selectsRequestedColumns() {
+        // Arrange
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", 1L);
+        row.put("name", "Name");
+        row.put("city", "City");
+        Pageable expectedPageable = PageRequest.of(0, 10, Sort.by("createdAt").ascending());
+        when(locationRepository.findAllProjected(List.of("id", "name", "city"), expectedPageable))
+                .thenReturn(new PageImpl<>(List.of(row), expectedPageable, 1));
+
+        // Act
+        Page<Map<String, Object>> result = locationService.getAllLocations(PageRequest.of(0, 10), " city,name ");
+
+        // Assert
+        assertEquals(1, result.getTotalElements());
+        assertEquals(List.of("id", "name", "city"), List.copyOf(result.getContent().get(0).keySet()));
+        verify(locationRepository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Should reject unknown fields and sort properties with a bad request")
+    void getAllLocations_withFields_rejectsUnknownNames() {
+        // Act & Assert
+        assertThrows(ResourceBadRequestException.class,
+                () -> locationService.getAllLocations(PageRequest.of(0, 10), "name,password"));
+        assertThrows(ResourceBadRequestException.class,
+                () -> locationService.getAllLocations(PageRequest.of(0, 10, Sort.by("secret")), "name"));
+        assertThrows(ResourceBadRequestException.class,
+                () -> locationService.getLocationById(1L, " , "));
+        verifyNoInteractions(locationRepository);
+    }
+
+    @Test
+    @DisplayName("Should throw ResourceNotFoundException when the projected location does not exist")
+    void getLocationById_withFields_notFound() {
+        // Arrange
+        when(locationRepository.findProjectedById(99L, List.of("id", "name"))).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> locationService.getLocationById(99L, "name"));
+    }
+
+    @Test
+    @DisplayName("Should serve pages and projections from the read store without querying the database once it is loaded")
+    void getAllLocations_fromReadStore() {
+        // Arrange
+        LocationDto location = new LocationDto(1L, "Name1", "Neighborhood1", "City1", "State1",
+                LocalDateTime.now().minusDays(1), LocalDateTime.now(), 0L);
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("name"));
+        when(locationReadStore.isServing()).thenReturn(true);
+        when(locationReadStore.supports(pageable.getSort())).thenReturn(true);
+        when(locationReadStore.findAll(pageable)).thenReturn(new PageImpl<>(List.of(location), pageable, 1));
+
+        // Act
+        Page<LocationDto> result = locationService.getAllLocations(pageable);
+        Page<Map<String, Object>> projected = locationService.getAllLocations(pageable, "city");
+
+        // Assert
+        assertSame(location, result.getContent().get(0));
+        assertEquals(List.of("id", "city"), List.copyOf(projected.getContent().get(0).keySet()));
+        assertEquals("City1", projected.getContent().get(0).get("city"));
+        verifyNoInteractions(locationRepository);
+    }
+}
@@ -0,0 +1,95 @@
+package org.challenge.locationmanagement.sharding;
+
+import org.challenge.locationmanagement.dto.LocationDto;
+import org.challenge.locationmanagement.exception.ResourceBadRequestException;
+import org.challenge.locationmanagement.exception.ResourceNotFoundException;
+import org.challenge.locationmanagement.service.LocationService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("sharding")
+class ShardedLocationServiceTest {
+
+    @Autowired
+    private LocationService locationService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Should place, find, list, update and delete locations across three shards")
+    void locationsAreShardedByStateAndRoutedById() {
+        // Arrange
+        assertEquals(3, shardRouter.shardCount());
+        List<LocationDto> created = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            created.add(locationService.createLocation(
+                    new LocationDto(null, "Name" + (char) ('A' + i), "Neighborhood", "City", "State" + i, null, null)));
+        }
+
+        // Assert: placed on the shard of the state, with an id that names that shard
+        Set<Long> ids = new HashSet<>();
+        Set<Integer> usedShards = new HashSet<>();
+        for (LocationDto location : created) {
+            assertTrue(ids.add(location.getId()), "duplicate id " + location.getId());
+            int shard = shardRouter.shardForState(location.getState());
+            assertEquals(shard, shardRouter.shardForId(location.getId()));
+            assertEquals(1, countOnShard(shard, location.getId()));
+            usedShards.add(shard);
+
+            assertEquals(location.getName(), locationService.getLocationById(location.getId()).getName());
+        }
+        assertTrue(usedShards.size() > 1, "all locations landed on one shard");
+
+        // Assert: listing merges the shards in the requested order
+        Page<LocationDto> firstPage = locationService.getAllLocations(PageRequest.of(0, 5, Sort.by("name").descending()));
+        Page<LocationDto> secondPage = locationService.getAllLocations(PageRequest.of(1, 5, Sort.by("name").descending()));
+        assertEquals(12, firstPage.getTotalElements());
+        assertEquals(List.of("NameL", "NameK", "NameJ", "NameI", "NameH"), names(firstPage));
+        assertEquals(List.of("NameG", "NameF", "NameE", "NameD", "NameC"), names(secondPage));
+
+        Page<Map<String, Object>> sparse = locationService.getAllLocations(PageRequest.of(0, 3), "name");
+        assertEquals(List.of("id", "name"), List.copyOf(sparse.getContent().get(0).keySet()));
+        assertEquals("NameA", sparse.getContent().get(0).get("name"));
+
+        // Act & Assert: single-id writes go to the owning shard
+        LocationDto target = created.get(5);
+        LocationDto update = new LocationDto(null, "Renamed", "Neighborhood", "City", target.getState(), null, null);
+        assertEquals("Renamed", locationService.updateLocation(target.getId(), update, target.getVersion()).getName());
+
+        String otherShardState = created.stream().map(LocationDto::getState)
+                .filter(state -> !shardRouter.keepsShard(target.getId(), state))
+                .findFirst().orElseThrow();
+        LocationDto move = new LocationDto(null, "Moved", "Neighborhood", "City", otherShardState, null, null);
+        assertThrows(ResourceBadRequestException.class, () -> locationService.updateLocation(target.getId(), move));
+        assertEquals("Renamed", locationService.getLocationById(target.getId()).getName());
+
+        locationService.deleteLocation(target.getId());
+        assertEquals(0, countOnShard(shardRouter.shardForId(target.getId()), target.getId()));
+        assertThrows(ResourceNotFoundException.class, () -> locationService.getLocationById(target.getId()));
+    }
+
+    private int countOnShard(int shard, long id) {
+        return ShardContext.call(shard, () ->
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM locations WHERE id = ?", Integer.class, id));
+    }
+
+    private static List<String> names(Page<LocationDto> page) {
+        return page.getContent().stream().map(LocationDto::getName).toList();
+    }
+}